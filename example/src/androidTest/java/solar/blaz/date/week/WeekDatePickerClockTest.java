@@ -0,0 +1,122 @@
+package solar.blaz.date.week;
+
+import android.test.InstrumentationTestCase;
+
+import org.threeten.bp.Clock;
+import org.threeten.bp.Instant;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.ZoneId;
+import org.threeten.bp.ZoneOffset;
+
+/**
+ * Checks that injected clock fully determines today, selection and visible week of the picker.
+ */
+public class WeekDatePickerClockTest extends InstrumentationTestCase {
+
+    private static final LocalDate TODAY = LocalDate.of(2020, 1, 1);
+
+    private final MutableClock clock = new MutableClock(TODAY.atTime(12, 0));
+
+    private WeekDatePicker picker;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                picker = new WeekDatePicker(getInstrumentation().getTargetContext());
+                picker.setClock(clock);
+            }
+        });
+    }
+
+    public void testFixedClockDeterminesToday() {
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(TODAY, picker.getSelectedDate());
+                assertEquals(0, picker.getSelectedWeek());
+                assertWeekContains(0, TODAY);
+            }
+        });
+    }
+
+    public void testMidnightRollover() {
+
+        final LocalDate nextWeek = TODAY.plusWeeks(1);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                clock.set(nextWeek.atTime(0, 0, 30));
+                picker.onDayChanged();
+
+                // rollover keeps the same days on screen, only week indexes move to new today
+                assertEquals(TODAY, picker.getSelectedDate());
+                assertEquals(-1, picker.getSelectedWeek());
+                assertWeekContains(-1, TODAY);
+                assertWeekContains(0, nextWeek);
+            }
+        });
+    }
+
+    public void testReplacedClockStartsOver() {
+
+        final LocalDate later = TODAY.plusDays(100);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                picker.setClock(new MutableClock(later.atTime(12, 0)));
+
+                assertEquals(later, picker.getSelectedDate());
+                assertEquals(0, picker.getSelectedWeek());
+                assertWeekContains(0, later);
+            }
+        });
+    }
+
+    private void assertWeekContains(int weekIndex, LocalDate date) {
+        LocalDate weekStart = picker.getWeekInfo(weekIndex).getWeekStart();
+        assertFalse(weekStart + " is after " + date, weekStart.isAfter(date));
+        assertTrue(weekStart + " is more than a week before " + date,
+                weekStart.plusWeeks(1).isAfter(date));
+    }
+
+    /**
+     * UTC clock that stays at set time until it is set again.
+     */
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(LocalDateTime time) {
+            set(time);
+        }
+
+        void set(LocalDateTime time) {
+            instant = time.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return Clock.fixed(instant, zone);
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package solar.blaz.date.week;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+
+import org.threeten.bp.LocalDate;
+
+/**
+ * Measures retained heap of pickers used as list rows.
+ */
+public class WeekDatePickerHeapTest extends InstrumentationTestCase {
+
+    /**
+     * Heap budget of a single laid out, bound and drawn picker, including its drawables and week
+     * models built on first draw. Shared style resources are not part of it since they are
+     * allocated only once for the first picker.
+     */
+    private static final long PER_INSTANCE_BUDGET_BYTES = 8 * 1024;
+
+    private static final int PICKER_COUNT = 200;
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 200;
+
+    /**
+     * Lets week models prefetched in background on first draw get published before heap is
+     * sampled.
+     */
+    private static final long PREFETCH_SETTLE_MILLIS = 500;
+
+    /**
+     * Measured pickers, kept in a field so they stay reachable while heap is sampled.
+     */
+    private WeekDatePicker[] pickers;
+
+    @Override
+    protected void tearDown() throws Exception {
+        pickers = null;
+        super.tearDown();
+    }
+
+    public void testPerInstanceHeapBudget() {
+
+        final Context context = getInstrumentation().getTargetContext();
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        final long[] before = new long[1];
+        final long[] after = new long[1];
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // warm up shared style resources
+                draw(new WeekDatePicker(context), canvas);
+
+                before[0] = usedHeap();
+
+                pickers = new WeekDatePicker[PICKER_COUNT];
+
+                LocalDate week = LocalDate.now();
+                for (int i = 0; i < PICKER_COUNT; i++) {
+                    WeekDatePicker picker = new WeekDatePicker(context);
+                    picker.bind(week.plusWeeks(i), week.plusWeeks(i));
+                    draw(picker, canvas);
+                    pickers[i] = picker;
+                }
+            }
+        });
+
+        SystemClock.sleep(PREFETCH_SETTLE_MILLIS);
+        getInstrumentation().waitForIdleSync();
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                after[0] = usedHeap();
+            }
+        });
+
+        bitmap.recycle();
+
+        long perInstance = (after[0] - before[0]) / PICKER_COUNT;
+        assertTrue("Picker retains " + perInstance + " bytes, budget is "
+                + PER_INSTANCE_BUDGET_BYTES, perInstance <= PER_INSTANCE_BUDGET_BYTES);
+    }
+
+    private static void draw(View view, Canvas canvas) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+        view.draw(canvas);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,151 @@
+package solar.blaz.date.week;
+
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+
+import org.threeten.bp.LocalDate;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks that indicators changed one by one are not lost when submitted set is applied.
+ */
+public class WeekDatePickerIndicatorsTest extends InstrumentationTestCase {
+
+    private static final long SUBMIT_TIMEOUT_MILLIS = 5000;
+
+    private final LocalDate today = LocalDate.now();
+
+    private WeekDatePicker picker;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                picker = new WeekDatePicker(getInstrumentation().getTargetContext());
+            }
+        });
+    }
+
+    public void testEditAfterSubmitIsKept() {
+
+        final Set<LocalDate> submitted = dates(0, 1, 2);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                picker.submitIndicators(submitted);
+                picker.setDateIndicator(today.plusDays(5), true);
+                picker.setDateIndicator(today.plusDays(1), false);
+            }
+        });
+
+        assertIndicators(0, 2, 5);
+    }
+
+    public void testEditBeforeSubmitIsReplaced() {
+
+        final Set<LocalDate> submitted = dates(0, 1);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                picker.setDateIndicator(today.plusDays(5), true);
+                picker.submitIndicators(submitted);
+            }
+        });
+
+        assertIndicators(0, 1);
+    }
+
+    public void testEditOfUnchangedDayIsKept() {
+
+        final Set<LocalDate> submitted = dates(0);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                picker.setDateIndicator(today.plusDays(3), true);
+                picker.submitIndicators(submitted);
+                // already set, but submitted set does not contain it
+                picker.setDateIndicator(today.plusDays(3), true);
+            }
+        });
+
+        assertIndicators(0, 3);
+    }
+
+    public void testLastSubmitWins() {
+
+        final Set<LocalDate> first = dates(0, 1);
+        final Set<LocalDate> second = dates(2);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                picker.submitIndicators(first);
+                picker.setDateIndicator(today.plusDays(4), true);
+                picker.submitIndicators(second);
+                picker.setDateIndicator(today.plusDays(6), true);
+            }
+        });
+
+        assertIndicators(2, 6);
+    }
+
+    private void assertIndicators(int... offsets) {
+
+        int[] expected = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            expected[i] = (int) today.plusDays(offsets[i]).toEpochDay();
+        }
+
+        awaitSubmission();
+
+        final int[][] actual = new int[1][];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                actual[0] = picker.getIndicatorDays();
+            }
+        });
+
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual[0]));
+    }
+
+    private void awaitSubmission() {
+
+        long deadline = SystemClock.uptimeMillis() + SUBMIT_TIMEOUT_MILLIS;
+        final boolean[] submitting = new boolean[1];
+
+        do {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    submitting[0] = picker.isSubmittingIndicators();
+                }
+            });
+
+            if (!submitting[0]) {
+                return;
+            }
+            SystemClock.sleep(10);
+        } while (SystemClock.uptimeMillis() < deadline);
+
+        fail("Submitted indicators were not applied in " + SUBMIT_TIMEOUT_MILLIS + " ms");
+    }
+
+    private Set<LocalDate> dates(int... offsets) {
+        Set<LocalDate> dates = new HashSet<>();
+        for (int offset : offsets) {
+            dates.add(today.plusDays(offset));
+        }
+        return dates;
+    }
+
+}
@@ -0,0 +1,108 @@
+package solar.blaz.date.week;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Microbenchmark of picker construction. Constructor should only read attributes, everything
+ * expensive is deferred until picker gets a size and is drawn.
+ *
+ * Deferred work is asserted directly. Timings are only reported to log, since absolute numbers
+ * depend on device. Compare reported constructor share between builds to see whether work moved
+ * in or out of constructor.
+ */
+public class WeekDatePickerInflationTest extends InstrumentationTestCase {
+
+    private static final String TAG = "InflationBenchmark";
+
+    private static final int WARM_UP_RUNS = 20;
+    private static final int RUNS = 200;
+
+    private static final int WIDTH = 1080;
+
+    public void testConstructorDefersWork() {
+
+        final Context context = getInstrumentation().getTargetContext();
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+
+                WeekDatePicker picker = new WeekDatePicker(context);
+
+                assertFalse("Style obtained by constructor", picker.hasStyle());
+                assertFalse("Drawables loaded by constructor", picker.areDrawablesLoaded());
+                assertFalse("Scrollers created by constructor", picker.hasScrollers());
+
+                Bitmap bitmap = Bitmap.createBitmap(WIDTH, 200, Bitmap.Config.ARGB_8888);
+                firstFrame(picker, new Canvas(bitmap));
+                bitmap.recycle();
+
+                assertTrue("Style not obtained by first frame", picker.hasStyle());
+                assertTrue("Drawables not loaded by first frame", picker.areDrawablesLoaded());
+                assertFalse("Scrollers created without interaction", picker.hasScrollers());
+            }
+        });
+    }
+
+    public void testConstructorCost() {
+
+        final Context context = getInstrumentation().getTargetContext();
+        final long[] constructorNanos = new long[RUNS];
+        final long[] firstFrameNanos = new long[RUNS];
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+
+                Bitmap bitmap = Bitmap.createBitmap(WIDTH, 200, Bitmap.Config.ARGB_8888);
+                Canvas canvas = new Canvas(bitmap);
+
+                for (int i = 0; i < WARM_UP_RUNS; i++) {
+                    firstFrame(new WeekDatePicker(context), canvas);
+                }
+
+                for (int i = 0; i < RUNS; i++) {
+                    long start = System.nanoTime();
+                    WeekDatePicker picker = new WeekDatePicker(context);
+                    long constructed = System.nanoTime();
+                    firstFrame(picker, canvas);
+                    long drawn = System.nanoTime();
+
+                    constructorNanos[i] = constructed - start;
+                    firstFrameNanos[i] = drawn - constructed;
+                }
+
+                bitmap.recycle();
+            }
+        });
+
+        long constructor = median(constructorNanos);
+        long firstFrame = median(firstFrameNanos);
+
+        long constructorShare = constructor * 100 / Math.max(constructor + firstFrame, 1);
+
+        Log.i(TAG, "constructor " + constructor / 1000 + " us, first frame " + firstFrame / 1000
+                + " us, constructor share " + constructorShare + " %");
+    }
+
+    private static void firstFrame(View view, Canvas canvas) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+        view.draw(canvas);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+}
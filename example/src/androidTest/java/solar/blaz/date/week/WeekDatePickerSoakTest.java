@@ -0,0 +1,533 @@
+package solar.blaz.date.week;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.test.InstrumentationTestRunner;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.MotionEvent;
+import android.view.ViewGroup;
+
+import org.threeten.bp.LocalDate;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Soak harness that drives an attached picker through randomized taps, flings, limit and indicator
+ * changes, state save and restore and size changes, while sampling heap and counts of everything
+ * that could grow: shared styles, paints, font metrics and layouts, pending notifications and
+ * midnight ticks, indicator days and edits.
+ *
+ * Runs for a minute by default. Longer sessions are started with
+ * {@code -e soakMinutes 180}. Report with peak and sampled counts is written to
+ * {@code soak-report.txt} in app external files directory and test fails when:
+ * <ul>
+ *     <li>any sampled count exceeds its bound,</li>
+ *     <li>heap grows faster than {@link #HEAP_GROWTH_BUDGET_KB_PER_HOUR} after warm up,</li>
+ *     <li>any replaced picker is still reachable. Pending runnables and listeners that outlive
+ *     their picker keep it reachable,</li>
+ *     <li>picker holds different indicators than were set, once submissions are applied.</li>
+ * </ul>
+ */
+public class WeekDatePickerSoakTest extends InstrumentationTestCase {
+
+    private static final String TAG = "SoakHarness";
+
+    private static final String PACKAGE = "solar.blaz.date.week.example";
+
+    private static final long HEAP_GROWTH_BUDGET_KB_PER_HOUR = 512;
+
+    private static final int DEFAULT_MINUTES = 1;
+
+    private static final int OPERATIONS_PER_CHUNK = 50;
+    private static final int CHUNKS_PER_SAMPLE = 20;
+    private static final int OPERATIONS_PER_RECREATE = 500;
+
+    /**
+     * Fraction of samples ignored when fitting heap growth, while caches fill up.
+     */
+    private static final float WARM_UP_FRACTION = 0.2f;
+
+    private static final int[] WIDTHS = { 480, 720, 1080, 1440 };
+
+    private static final int INDICATOR_WINDOW_DAYS = 365;
+
+    /**
+     * Picker posts at most one notification of each kind: date, range and week.
+     */
+    private static final int MAX_PENDING_NOTIFICATIONS = 3;
+
+    private static final long SUBMIT_TIMEOUT_MILLIS = 5000;
+
+    private static final String SAMPLE_COLUMNS = "elapsed_s\theap_kb\tstyles\tpaints"
+            + "\tfont_metrics\tweek_number_layouts\tmonth_layouts\tnotifications"
+            + "\tmidnight_ticks\tindicators\tindicator_capacity\tindicator_edits\n";
+
+    private final Random random = new Random(42);
+    private final LocalDate origin = LocalDate.now();
+
+    private final Set<LocalDate> indicators = new HashSet<>();
+    private final List<WeakReference<WeekDatePicker>> retiredPickers = new ArrayList<>();
+
+    private Activity activity;
+    private ViewGroup container;
+    private WeekDatePicker picker;
+    private int operations;
+    private boolean recreatePending;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        activity = launchActivity(PACKAGE, MainActivity.class, null);
+        container = (ViewGroup) activity.findViewById(android.R.id.content);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                picker = new WeekDatePicker(activity);
+                picker.setId(android.R.id.custom);
+                container.addView(picker, new ViewGroup.LayoutParams(WIDTHS[0],
+                        ViewGroup.LayoutParams.WRAP_CONTENT));
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        activity.finish();
+        super.tearDown();
+    }
+
+    public void testSoak() throws IOException {
+
+        long durationMillis = getMinutes() * 60 * 1000L;
+        long start = SystemClock.elapsedRealtime();
+
+        List<Sample> samples = new ArrayList<>();
+
+        while (SystemClock.elapsedRealtime() - start < durationMillis) {
+
+            for (int chunk = 0; chunk < CHUNKS_PER_SAMPLE; chunk++) {
+                getInstrumentation().runOnMainSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < OPERATIONS_PER_CHUNK; i++) {
+                            randomOperation();
+                        }
+                    }
+                });
+                getInstrumentation().waitForIdleSync();
+            }
+
+            samples.add(sample(SystemClock.elapsedRealtime() - start));
+        }
+
+        int alivePickers = countAlivePickers();
+        int[] pickerIndicators = getPickerIndicatorDays();
+        int[] expectedIndicators = toSortedEpochDays(indicators);
+        long growth = heapGrowthPerHour(samples);
+        Sample peak = peak(samples);
+
+        String report = buildReport(samples, peak, growth, alivePickers,
+                expectedIndicators.length, pickerIndicators.length);
+        Log.i(TAG, report);
+        writeReport(report);
+
+        int windowDays = INDICATOR_WINDOW_DAYS * 2;
+        assertBound("Shared styles", peak.styles, PickerStyle.MAX_STYLES);
+        assertBound("Paints", peak.paints, PickerStyle.MAX_STYLES * 2);
+        assertBound("Font metrics", peak.fontMetrics, PickerStyle.MAX_STYLES);
+        assertBound("Week number layouts", peak.weekNumberLayouts, PickerStyle.MAX_STYLES * 53);
+        assertBound("Month layouts", peak.monthLayouts, PickerStyle.MAX_STYLES * 12);
+        assertBound("Pending notifications", peak.notifications, MAX_PENDING_NOTIFICATIONS);
+        assertBound("Pending midnight ticks", peak.midnightTicks, 1);
+        assertBound("Indicator days", peak.indicators, windowDays);
+        assertBound("Indicator capacity", peak.indicatorCapacity, windowDays * 2);
+        assertBound("Indicator edits", peak.indicatorEdits, windowDays);
+
+        assertTrue("Heap grows " + growth + " KB per hour, budget is "
+                + HEAP_GROWTH_BUDGET_KB_PER_HOUR, growth <= HEAP_GROWTH_BUDGET_KB_PER_HOUR);
+        assertEquals("Replaced pickers still reachable", 0, alivePickers);
+        assertEquals("Picker indicators", Arrays.toString(expectedIndicators),
+                Arrays.toString(pickerIndicators));
+    }
+
+    private static void assertBound(String name, int peak, int bound) {
+        assertTrue(name + " peaked at " + peak + ", bound is " + bound, peak <= bound);
+    }
+
+    /**
+     * Samples heap after forced GC and counts read from picker and shared styles on main thread.
+     */
+    private Sample sample(long elapsedMillis) {
+
+        final Sample sample = new Sample();
+        sample.elapsedMillis = elapsedMillis;
+        sample.heapBytes = usedHeap();
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                sample.styles = PickerStyle.getStyleCount();
+                sample.paints = PickerStyle.getPaintCount();
+                sample.fontMetrics = PickerStyle.getFontMetricsCount();
+                sample.weekNumberLayouts = PickerStyle.getWeekNumberLayoutCount();
+                sample.monthLayouts = PickerStyle.getMonthLayoutCount();
+                sample.notifications = picker.getPendingNotificationCount();
+                sample.midnightTicks = picker.getPendingMidnightTickCount();
+                sample.indicators = picker.getIndicatorCount();
+                sample.indicatorCapacity = picker.getIndicatorCapacity();
+                sample.indicatorEdits = picker.getIndicatorEditCount();
+            }
+        });
+
+        return sample;
+    }
+
+    private static Sample peak(List<Sample> samples) {
+
+        Sample peak = new Sample();
+        for (Sample sample : samples) {
+            peak.heapBytes = Math.max(peak.heapBytes, sample.heapBytes);
+            peak.styles = Math.max(peak.styles, sample.styles);
+            peak.paints = Math.max(peak.paints, sample.paints);
+            peak.fontMetrics = Math.max(peak.fontMetrics, sample.fontMetrics);
+            peak.weekNumberLayouts = Math.max(peak.weekNumberLayouts, sample.weekNumberLayouts);
+            peak.monthLayouts = Math.max(peak.monthLayouts, sample.monthLayouts);
+            peak.notifications = Math.max(peak.notifications, sample.notifications);
+            peak.midnightTicks = Math.max(peak.midnightTicks, sample.midnightTicks);
+            peak.indicators = Math.max(peak.indicators, sample.indicators);
+            peak.indicatorCapacity = Math.max(peak.indicatorCapacity, sample.indicatorCapacity);
+            peak.indicatorEdits = Math.max(peak.indicatorEdits, sample.indicatorEdits);
+        }
+        return peak;
+    }
+
+    private void randomOperation() {
+
+        operations++;
+        if (operations % OPERATIONS_PER_RECREATE == 0) {
+            recreatePending = true;
+        }
+
+        // restored picker only gets indicators that were applied when state was saved
+        if (recreatePending && !picker.isSubmittingIndicators()) {
+            recreatePending = false;
+            recreate();
+            return;
+        }
+
+        int operation = random.nextInt(100);
+        if (operation < 40) {
+            tap();
+        } else if (operation < 60) {
+            fling();
+        } else if (operation < 80) {
+            toggleIndicator();
+        } else if (operation < 85) {
+            submitIndicators();
+        } else if (operation < 92) {
+            setLimits();
+        } else {
+            resize();
+        }
+    }
+
+    private void tap() {
+        float x = random.nextInt(Math.max(picker.getWidth(), 1));
+        float y = random.nextInt(Math.max(picker.getHeight(), 1));
+
+        long time = SystemClock.uptimeMillis();
+        dispatch(time, time, MotionEvent.ACTION_DOWN, x, y);
+        dispatch(time, time + 50, MotionEvent.ACTION_UP, x, y);
+    }
+
+    private void fling() {
+        int width = Math.max(picker.getWidth(), 1);
+        float x = random.nextInt(width);
+        float dx = (random.nextBoolean() ? 1 : -1) * width / 10f;
+        float y = picker.getHeight() / 2f;
+
+        long downTime = SystemClock.uptimeMillis();
+        long time = downTime;
+        dispatch(downTime, time, MotionEvent.ACTION_DOWN, x, y);
+        for (int i = 0; i < 5; i++) {
+            x += dx;
+            time += 10;
+            dispatch(downTime, time, MotionEvent.ACTION_MOVE, x, y);
+        }
+        dispatch(downTime, time + 10, MotionEvent.ACTION_UP, x, y);
+    }
+
+    private void dispatch(long downTime, long time, int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(downTime, time, action, x, y, 0);
+        picker.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private void toggleIndicator() {
+        LocalDate date = randomDate();
+        boolean enabled = !indicators.contains(date);
+
+        if (enabled) {
+            indicators.add(date);
+        } else {
+            indicators.remove(date);
+        }
+        picker.setDateIndicator(date, enabled);
+    }
+
+    private void submitIndicators() {
+        indicators.clear();
+        int count = random.nextInt(INDICATOR_WINDOW_DAYS);
+        for (int i = 0; i < count; i++) {
+            indicators.add(randomDate());
+        }
+        picker.submitIndicators(new HashSet<>(indicators));
+    }
+
+    private void setLimits() {
+        if (random.nextBoolean()) {
+            picker.setLimits(null, null);
+        } else {
+            LocalDate from = randomDate();
+            picker.setLimits(from, from.plusDays(7 + random.nextInt(INDICATOR_WINDOW_DAYS)));
+        }
+    }
+
+    private void resize() {
+        ViewGroup.LayoutParams params = picker.getLayoutParams();
+        params.width = WIDTHS[random.nextInt(WIDTHS.length)];
+        picker.setLayoutParams(params);
+    }
+
+    /**
+     * Replaces picker with a new one restored from parceled state of the old one.
+     */
+    private void recreate() {
+
+        SparseArray<Parcelable> state = new SparseArray<>();
+        picker.saveHierarchyState(state);
+
+        Parcel parcel = Parcel.obtain();
+        parcel.writeSparseArray(asObjects(state));
+        parcel.setDataPosition(0);
+        @SuppressWarnings("unchecked")
+        SparseArray<Parcelable> restored = parcel.readSparseArray(WeekDatePicker.class.getClassLoader());
+        parcel.recycle();
+
+        ViewGroup.LayoutParams params = picker.getLayoutParams();
+        container.removeView(picker);
+        retiredPickers.add(new WeakReference<>(picker));
+
+        picker = new WeekDatePicker(activity);
+        picker.setId(android.R.id.custom);
+        picker.restoreHierarchyState(restored);
+        container.addView(picker, params);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SparseArray<Object> asObjects(SparseArray<Parcelable> array) {
+        return (SparseArray<Object>) (SparseArray<?>) array;
+    }
+
+    private LocalDate randomDate() {
+        return origin.plusDays(random.nextInt(INDICATOR_WINDOW_DAYS * 2) - INDICATOR_WINDOW_DAYS);
+    }
+
+    private int countAlivePickers() {
+        usedHeap();
+
+        int alive = 0;
+        for (WeakReference<WeekDatePicker> reference : retiredPickers) {
+            if (reference.get() != null) {
+                alive++;
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Returns picker indicators once submitted indicators are applied.
+     */
+    private int[] getPickerIndicatorDays() {
+
+        long deadline = SystemClock.uptimeMillis() + SUBMIT_TIMEOUT_MILLIS;
+        final int[][] days = new int[1][];
+
+        while (true) {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    days[0] = picker.isSubmittingIndicators() ? null : picker.getIndicatorDays();
+                }
+            });
+
+            if (days[0] != null) {
+                return days[0];
+            }
+
+            assertTrue("Submitted indicators were not applied in " + SUBMIT_TIMEOUT_MILLIS + " ms",
+                    SystemClock.uptimeMillis() < deadline);
+            SystemClock.sleep(10);
+        }
+    }
+
+    private static int[] toSortedEpochDays(Set<LocalDate> dates) {
+        int[] days = new int[dates.size()];
+        int index = 0;
+        for (LocalDate date : dates) {
+            days[index++] = (int) date.toEpochDay();
+        }
+        Arrays.sort(days);
+        return days;
+    }
+
+    /**
+     * Least squares slope of heap samples after warm up.
+     */
+    private static long heapGrowthPerHour(List<Sample> samples) {
+
+        int first = (int) (samples.size() * WARM_UP_FRACTION);
+        int count = samples.size() - first;
+        if (count < 2) {
+            return 0;
+        }
+
+        double meanTime = 0;
+        double meanHeap = 0;
+        for (int i = first; i < samples.size(); i++) {
+            meanTime += samples.get(i).elapsedMillis;
+            meanHeap += samples.get(i).heapBytes;
+        }
+        meanTime /= count;
+        meanHeap /= count;
+
+        double covariance = 0;
+        double variance = 0;
+        for (int i = first; i < samples.size(); i++) {
+            double time = samples.get(i).elapsedMillis - meanTime;
+            covariance += time * (samples.get(i).heapBytes - meanHeap);
+            variance += time * time;
+        }
+
+        if (variance == 0) {
+            return 0;
+        }
+
+        double bytesPerMilli = covariance / variance;
+        return (long) (bytesPerMilli * 60 * 60 * 1000 / 1024);
+    }
+
+    private String buildReport(List<Sample> samples, Sample peak, long growth, int alivePickers,
+            int expectedIndicators, int pickerIndicators) {
+
+        StringBuilder report = new StringBuilder();
+        report.append("WeekDatePicker soak report\n");
+        report.append("operations: ").append(operations).append('\n');
+        report.append("pickers replaced: ").append(retiredPickers.size()).append('\n');
+        report.append("pickers still reachable: ").append(alivePickers).append('\n');
+        report.append("indicators expected: ").append(expectedIndicators)
+                .append(", held: ").append(pickerIndicators).append('\n');
+        report.append("heap growth: ").append(growth).append(" KB/h, budget ")
+                .append(HEAP_GROWTH_BUDGET_KB_PER_HOUR).append(" KB/h\n");
+        report.append("\npeak\n");
+        appendRow(report.append(SAMPLE_COLUMNS), peak);
+        report.append("\nsamples\n").append(SAMPLE_COLUMNS);
+        for (Sample sample : samples) {
+            appendRow(report, sample);
+        }
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, Sample sample) {
+        report.append(sample.elapsedMillis / 1000)
+                .append('\t').append(sample.heapBytes / 1024)
+                .append('\t').append(sample.styles)
+                .append('\t').append(sample.paints)
+                .append('\t').append(sample.fontMetrics)
+                .append('\t').append(sample.weekNumberLayouts)
+                .append('\t').append(sample.monthLayouts)
+                .append('\t').append(sample.notifications)
+                .append('\t').append(sample.midnightTicks)
+                .append('\t').append(sample.indicators)
+                .append('\t').append(sample.indicatorCapacity)
+                .append('\t').append(sample.indicatorEdits)
+                .append('\n');
+    }
+
+    private void writeReport(String report) throws IOException {
+
+        File dir = getInstrumentation().getTargetContext().getExternalFilesDir(null);
+        if (dir == null) {
+            return;
+        }
+
+        FileWriter writer = new FileWriter(new File(dir, "soak-report.txt"));
+        try {
+            writer.write(report);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private int getMinutes() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                && getInstrumentation() instanceof InstrumentationTestRunner) {
+            Bundle arguments = ((InstrumentationTestRunner) getInstrumentation()).getArguments();
+            String minutes = arguments == null ? null : arguments.getString("soakMinutes");
+            if (minutes != null) {
+                return Integer.parseInt(minutes);
+            }
+        }
+        return DEFAULT_MINUTES;
+    }
+
+    /**
+     * Heap and counts of everything that could grow, taken at a single point of the session.
+     */
+    private static final class Sample {
+
+        long elapsedMillis;
+        long heapBytes;
+
+        int styles;
+        int paints;
+        int fontMetrics;
+        int weekNumberLayouts;
+        int monthLayouts;
+
+        int notifications;
+        int midnightTicks;
+
+        int indicators;
+        int indicatorCapacity;
+        int indicatorEdits;
+
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,80 @@
+package solar.blaz.date.week;
+
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+
+/**
+ * Information about a single drawn day passed to {@link DayDecorator}. The same instance is reused
+ * for every day of every frame, so it is only valid during {@link DayDecorator#decorate} call and
+ * must not be kept.
+ */
+public final class DayCell {
+
+    public static final int STATE_ENABLED = WeekDrawer.STATE_ENABLED;
+    public static final int STATE_PRESSED = WeekDrawer.STATE_PRESSED;
+    public static final int STATE_SELECTED = WeekDrawer.STATE_SELECTED;
+    /**
+     * Day is inside of selected range, but is not its first or last day.
+     */
+    public static final int STATE_IN_RANGE = WeekDrawer.STATE_IN_RANGE;
+    public static final int STATE_INDICATOR = WeekDrawer.STATE_INDICATOR;
+    public static final int STATE_FOCUSED = WeekDrawer.STATE_FOCUSED;
+
+    int epochDay;
+    int dayOfMonth;
+    int state;
+    final Rect bounds = new Rect();
+
+    DayCell() {
+    }
+
+    /**
+     * Day as epoch day, see {@link org.threeten.bp.LocalDate#toEpochDay()}.
+     */
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public int getDayOfMonth() {
+        return dayOfMonth;
+    }
+
+    /**
+     * Returns state bits, combination of {@code STATE_*} constants.
+     */
+    public int getState() {
+        return state;
+    }
+
+    public boolean isEnabled() {
+        return (state & STATE_ENABLED) != 0;
+    }
+
+    public boolean isPressed() {
+        return (state & STATE_PRESSED) != 0;
+    }
+
+    public boolean isSelected() {
+        return (state & STATE_SELECTED) != 0;
+    }
+
+    public boolean isInRange() {
+        return (state & STATE_IN_RANGE) != 0;
+    }
+
+    public boolean hasIndicator() {
+        return (state & STATE_INDICATOR) != 0;
+    }
+
+    public boolean isFocused() {
+        return (state & STATE_FOCUSED) != 0;
+    }
+
+    /**
+     * Returns bounds of the cell in canvas coordinates. Returned rect must not be modified.
+     */
+    @NonNull public Rect getBounds() {
+        return bounds;
+    }
+
+}
@@ -0,0 +1,31 @@
+package solar.blaz.date.week;
+
+import android.graphics.Canvas;
+import android.support.annotation.NonNull;
+
+/**
+ * Draws custom content, like badges, strike-throughs or price labels, on top of a day cell.
+ * Decorators are called for every visible day on every frame, after the day is drawn.
+ *
+ * Decorators must not allocate. Create paints, paths and text layouts up front and look up data by
+ * {@link DayCell#getEpochDay()} in structures that do not box keys, e.g.
+ * {@link android.util.SparseArray}.
+ */
+public interface DayDecorator {
+
+    /**
+     * Draws decoration of passed cell.
+     *
+     * @param canvas Canvas positioned at the row of the cell
+     * @param cell Reused cell info, only valid during this call
+     */
+    void decorate(@NonNull Canvas canvas, @NonNull DayCell cell);
+
+    /**
+     * Returns {@code true} if output only depends on passed cell, so a drawn week can be cached and
+     * reused until state of its days changes. Decorators that draw external data that can change at
+     * any time return {@code false}.
+     */
+    boolean isCacheablePerWeek();
+
+}
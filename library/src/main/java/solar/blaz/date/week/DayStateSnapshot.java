@@ -0,0 +1,96 @@
+package solar.blaz.date.week;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable copy of picker state that decides how days are drawn: selection, limits and
+ * indicators. Unlike the picker it can be read from any thread, so {@link WeekRenderModel week
+ * models} are built from it in background.
+ *
+ * Pressed and focused days are not part of the snapshot, see {@link WeekRenderModel}.
+ */
+final class DayStateSnapshot implements WeekDrawer.DayStates {
+
+    private static final int NO_DAY = WeekDrawer.NO_DAY;
+
+    // all days are epoch days
+    private final boolean rangeMode;
+    private final int selectedDay;
+    private final int rangeStart;
+    private final int rangeEnd;
+    private final int fromDay;
+    private final int toDay;
+
+    /**
+     * Sorted and never modified.
+     */
+    @NonNull private final int[] indicatorDays;
+
+    DayStateSnapshot(boolean rangeMode, int selectedDay, int rangeStart, int rangeEnd, int fromDay,
+            int toDay, @NonNull int[] indicatorDays) {
+        this.rangeMode = rangeMode;
+        this.selectedDay = selectedDay;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        this.indicatorDays = indicatorDays;
+    }
+
+    /**
+     * Returns {@code true} if snapshot was taken from passed state. Indicators are compared by
+     * identity, since picker takes a new immutable copy of its indicators after every change.
+     */
+    boolean matches(boolean rangeMode, int selectedDay, int rangeStart, int rangeEnd, int fromDay,
+            int toDay, @NonNull int[] indicatorDays) {
+        return this.rangeMode == rangeMode
+                && this.selectedDay == selectedDay
+                && this.rangeStart == rangeStart
+                && this.rangeEnd == rangeEnd
+                && this.fromDay == fromDay
+                && this.toDay == toDay
+                && this.indicatorDays == indicatorDays;
+    }
+
+    @Override
+    public int getDayState(int epochDay) {
+
+        int state = 0;
+
+        if ((fromDay == NO_DAY || epochDay >= fromDay) && (toDay == NO_DAY || epochDay <= toDay)) {
+            state |= WeekDrawer.STATE_ENABLED;
+        }
+
+        if (rangeMode) {
+            int rangeEnd = getRangeEnd();
+            if (rangeStart != NO_DAY && epochDay >= rangeStart && epochDay <= rangeEnd) {
+                state |= WeekDrawer.STATE_SELECTED;
+
+                if (epochDay != rangeStart && epochDay != rangeEnd) {
+                    state |= WeekDrawer.STATE_IN_RANGE;
+                }
+            }
+        } else if (epochDay == selectedDay) {
+            state |= WeekDrawer.STATE_SELECTED;
+        }
+
+        if (Arrays.binarySearch(indicatorDays, epochDay) >= 0) {
+            state |= WeekDrawer.STATE_INDICATOR;
+        }
+
+        return state;
+    }
+
+    @Override
+    public int getRangeStart() {
+        return rangeMode ? rangeStart : NO_DAY;
+    }
+
+    @Override
+    public int getRangeEnd() {
+        return rangeEnd == NO_DAY ? rangeStart : rangeEnd;
+    }
+
+}
@@ -0,0 +1,336 @@
+package solar.blaz.date.week;
+
+import android.graphics.Paint.FontMetricsInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.BoringLayout;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import org.threeten.bp.DayOfWeek;
+import org.threeten.bp.Month;
+import org.threeten.bp.format.TextStyle;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Style derived resources (paints, font metrics and text layouts) shared between all pickers with
+ * the same configuration. Without sharing every picker in a list row holds its own copy of
+ * identical objects.
+ *
+ * Shared styles are handed out by a small LRU registry and must only be used from the main thread,
+ * since paint colors are changed while drawing. Unshared styles for background rendering are
+ * created with {@link #create}.
+ */
+final class PickerStyle {
+
+    static final int MAX_STYLES = 8;
+
+    private static final Map<PickerStyle, PickerStyle> registry = createLru(MAX_STYLES);
+
+    /**
+     * Paints keyed by text size, separately for day numbers and labels, so a color set for one
+     * role never shows up in the other. Week numbers and month names are labels.
+     *
+     * Paints are still shared by all pickers and all layouts built from them, so every draw path
+     * has to set paint color right before it draws a layout with it.
+     *
+     * Caches are bounded like the registry. Styles keep their paints after they are evicted.
+     */
+    private static final Map<Float, TextPaint> dayPaints = createLru(MAX_STYLES);
+    private static final Map<Float, TextPaint> labelPaints = createLru(MAX_STYLES);
+
+    /**
+     * Font metrics keyed by text size. Styles that only differ in width or labels reuse them
+     * instead of measuring fonts again.
+     */
+    private static final Map<Float, FontMetricsInt> fontMetrics = createLru(MAX_STYLES);
+
+    private final float textSize;
+    private final float labelTextSize;
+    private final int dayWidth;
+    @Nullable private final TextUtils.TruncateAt ellipsize;
+    @NonNull private final DayOfWeek firstDayOfWeek;
+    @Nullable private final CharSequence[] labelNames;
+    @NonNull private final Locale locale;
+
+    TextPaint dayTextPaint;
+    TextPaint dayLabelTextPaint;
+
+    BoringLayout.Metrics dayMetrics;
+    BoringLayout.Metrics dayLabelMetrics;
+
+    private BoringLayout[] dayLayouts; // indexed by day of month - 1
+    private BoringLayout[] dayLabelLayouts; // indexed by position in week
+    private BoringLayout[] weekNumberLayouts; // indexed by week number - 1
+    private BoringLayout[] monthLayouts; // indexed by month value - 1
+
+    private PickerStyle(float textSize, float labelTextSize, int dayWidth,
+            @Nullable TextUtils.TruncateAt ellipsize, @NonNull DayOfWeek firstDayOfWeek,
+            @Nullable CharSequence[] labelNames, @NonNull Locale locale) {
+        this.textSize = textSize;
+        this.labelTextSize = labelTextSize;
+        this.dayWidth = dayWidth;
+        this.ellipsize = ellipsize;
+        this.firstDayOfWeek = firstDayOfWeek;
+        this.labelNames = labelNames;
+        this.locale = locale;
+    }
+
+    /**
+     * Returns shared style for passed configuration. Negative text sizes keep paint default size.
+     */
+    @NonNull static PickerStyle obtain(float textSize, float labelTextSize, int dayWidth,
+            @Nullable TextUtils.TruncateAt ellipsize, @NonNull DayOfWeek firstDayOfWeek,
+            @Nullable CharSequence[] labelNames, @NonNull Locale locale) {
+
+        PickerStyle key = new PickerStyle(textSize, labelTextSize, dayWidth, ellipsize,
+                firstDayOfWeek, labelNames, locale);
+
+        PickerStyle style = registry.get(key);
+        if (style == null) {
+            style = key;
+            style.dayTextPaint = obtainPaint(dayPaints, textSize);
+            style.dayLabelTextPaint = obtainPaint(labelPaints, labelTextSize);
+            style.dayMetrics = toBoringFontMetrics(obtainFontMetrics(textSize), dayWidth);
+            style.dayLabelMetrics = toBoringFontMetrics(obtainFontMetrics(labelTextSize), dayWidth);
+            registry.put(style, style);
+        }
+        return style;
+    }
+
+    /**
+     * Creates style that is not shared with anyone, with its own paints. Unshared styles can be
+     * used on any thread.
+     */
+    @NonNull static PickerStyle create(float textSize, float labelTextSize, int dayWidth,
+            @Nullable TextUtils.TruncateAt ellipsize, @NonNull DayOfWeek firstDayOfWeek,
+            @Nullable CharSequence[] labelNames, @NonNull Locale locale) {
+
+        PickerStyle style = new PickerStyle(textSize, labelTextSize, dayWidth, ellipsize,
+                firstDayOfWeek, labelNames, locale);
+        style.dayTextPaint = createPaint(textSize);
+        style.dayLabelTextPaint = createPaint(labelTextSize);
+        style.dayMetrics = toBoringFontMetrics(style.dayTextPaint.getFontMetricsInt(), dayWidth);
+        style.dayLabelMetrics = toBoringFontMetrics(style.dayLabelTextPaint.getFontMetricsInt(), dayWidth);
+        return style;
+    }
+
+    @NonNull private static TextPaint obtainPaint(@NonNull Map<Float, TextPaint> paints,
+            float textSize) {
+        TextPaint paint = paints.get(textSize);
+        if (paint == null) {
+            paint = createPaint(textSize);
+            paints.put(textSize, paint);
+        }
+        return paint;
+    }
+
+    @NonNull private static TextPaint createPaint(float textSize) {
+        TextPaint paint = new TextPaint();
+        paint.setAntiAlias(true);
+        if (textSize > -1) {
+            paint.setTextSize(textSize);
+        }
+        return paint;
+    }
+
+    /**
+     * Returns shared font metrics of text size, without building a style. Main thread only.
+     */
+    @NonNull static FontMetricsInt obtainFontMetrics(float textSize) {
+        FontMetricsInt metrics = fontMetrics.get(textSize);
+        if (metrics == null) {
+            metrics = createPaint(textSize).getFontMetricsInt();
+            fontMetrics.put(textSize, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns number of shared styles in registry. Used by tests.
+     */
+    static int getStyleCount() {
+        return registry.size();
+    }
+
+    /**
+     * Returns number of cached paints of all roles. Used by tests.
+     */
+    static int getPaintCount() {
+        return dayPaints.size() + labelPaints.size();
+    }
+
+    /**
+     * Returns number of cached font metrics. Used by tests.
+     */
+    static int getFontMetricsCount() {
+        return fontMetrics.size();
+    }
+
+    /**
+     * Returns number of week number layouts built by shared styles. Used by tests.
+     */
+    static int getWeekNumberLayoutCount() {
+        int count = 0;
+        for (PickerStyle style : registry.keySet()) {
+            count += countLayouts(style.weekNumberLayouts);
+        }
+        return count;
+    }
+
+    /**
+     * Returns number of month layouts built by shared styles. Used by tests.
+     */
+    static int getMonthLayoutCount() {
+        int count = 0;
+        for (PickerStyle style : registry.keySet()) {
+            count += countLayouts(style.monthLayouts);
+        }
+        return count;
+    }
+
+    private static int countLayouts(@Nullable BoringLayout[] layouts) {
+        int count = 0;
+        if (layouts != null) {
+            for (BoringLayout layout : layouts) {
+                if (layout != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Layout for day number. Day layouts only depend on day of month so 31 of them cover every
+     * week of every picker using this style.
+     */
+    @NonNull BoringLayout getDayLayout(int dayOfMonth) {
+        if (dayLayouts == null) {
+            dayLayouts = new BoringLayout[31];
+        }
+
+        BoringLayout layout = dayLayouts[dayOfMonth - 1];
+        if (layout == null) {
+            layout = BoringLayout.make(String.valueOf(dayOfMonth), dayTextPaint, dayWidth,
+                    Layout.Alignment.ALIGN_CENTER, 1f, 1f, dayMetrics, false, ellipsize,
+                    dayWidth);
+            dayLayouts[dayOfMonth - 1] = layout;
+        }
+        return layout;
+    }
+
+    @NonNull BoringLayout getDayLabelLayout(int index) {
+        if (dayLabelLayouts == null) {
+            dayLabelLayouts = new BoringLayout[7];
+        }
+
+        BoringLayout layout = dayLabelLayouts[index];
+        if (layout == null) {
+            CharSequence name;
+            if (labelNames == null) {
+                name = WeekdayNames.get(locale, TextStyle.SHORT, firstDayOfWeek)[index];
+            } else {
+                name = labelNames[firstDayOfWeek.plus(index).getValue() - 1];
+            }
+
+            layout = BoringLayout.make(name, dayLabelTextPaint, dayWidth,
+                    Layout.Alignment.ALIGN_CENTER, 1f, 1f, dayLabelMetrics, false, ellipsize,
+                    dayWidth);
+            dayLabelLayouts[index] = layout;
+        }
+        return layout;
+    }
+
+    /**
+     * Layout for week number drawn in week column. Week numbers are drawn with label paint and
+     * at most 53 of them cover every week.
+     */
+    @NonNull BoringLayout getWeekNumberLayout(int weekNumber) {
+        if (weekNumberLayouts == null) {
+            weekNumberLayouts = new BoringLayout[53];
+        }
+
+        BoringLayout layout = weekNumberLayouts[weekNumber - 1];
+        if (layout == null) {
+            layout = BoringLayout.make(String.valueOf(weekNumber), dayLabelTextPaint, dayWidth,
+                    Layout.Alignment.ALIGN_CENTER, 1f, 1f, dayLabelMetrics, false, ellipsize,
+                    dayWidth);
+            weekNumberLayouts[weekNumber - 1] = layout;
+        }
+        return layout;
+    }
+
+    /**
+     * Layout for short month name drawn above week column.
+     */
+    @NonNull BoringLayout getMonthLayout(@NonNull Month month) {
+        if (monthLayouts == null) {
+            monthLayouts = new BoringLayout[12];
+        }
+
+        BoringLayout layout = monthLayouts[month.ordinal()];
+        if (layout == null) {
+            layout = BoringLayout.make(month.getDisplayName(TextStyle.SHORT, locale),
+                    dayLabelTextPaint, dayWidth, Layout.Alignment.ALIGN_CENTER, 1f, 1f,
+                    dayLabelMetrics, false, ellipsize, dayWidth);
+            monthLayouts[month.ordinal()] = layout;
+        }
+        return layout;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PickerStyle that = (PickerStyle) o;
+
+        return Float.compare(that.textSize, textSize) == 0
+                && Float.compare(that.labelTextSize, labelTextSize) == 0
+                && dayWidth == that.dayWidth
+                && ellipsize == that.ellipsize
+                && firstDayOfWeek == that.firstDayOfWeek
+                && Arrays.equals(labelNames, that.labelNames)
+                && locale.equals(that.locale);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(textSize);
+        result = 31 * result + Float.floatToIntBits(labelTextSize);
+        result = 31 * result + dayWidth;
+        result = 31 * result + (ellipsize != null ? ellipsize.hashCode() : 0);
+        result = 31 * result + firstDayOfWeek.hashCode();
+        result = 31 * result + Arrays.hashCode(labelNames);
+        result = 31 * result + locale.hashCode();
+        return result;
+    }
+
+    @NonNull private static <K, V> Map<K, V> createLru(final int maxSize) {
+        return new LinkedHashMap<K, V>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static BoringLayout.Metrics toBoringFontMetrics(FontMetricsInt metrics, int width) {
+
+        BoringLayout.Metrics fontMetrics = new BoringLayout.Metrics();
+        fontMetrics.ascent = metrics.ascent;
+        fontMetrics.bottom = metrics.bottom;
+        fontMetrics.descent = metrics.descent;
+        fontMetrics.leading = metrics.leading;
+        fontMetrics.top = metrics.top;
+        fontMetrics.width = width;
+        return fontMetrics;
+    }
+
+}
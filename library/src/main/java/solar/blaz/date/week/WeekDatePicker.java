@@ -3,44 +3,53 @@ package solar.blaz.date.week;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Paint.FontMetricsInt;
-import android.graphics.Paint.Style;
 import android.graphics.Rect;
-import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.text.TextDirectionHeuristicCompat;
 import android.support.v4.text.TextDirectionHeuristicsCompat;
-import android.text.BoringLayout;
-import android.text.Layout;
-import android.text.TextPaint;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.SparseBooleanArray;
+import android.util.SparseArray;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
+import android.view.accessibility.AccessibilityEvent;
 import android.view.animation.DecelerateInterpolator;
+import android.widget.EdgeEffect;
 import android.widget.OverScroller;
 
+import org.threeten.bp.Clock;
 import org.threeten.bp.DayOfWeek;
+import org.threeten.bp.Duration;
 import org.threeten.bp.LocalDate;
-import org.threeten.bp.format.TextStyle;
+import org.threeten.bp.ZonedDateTime;
+import org.threeten.bp.format.DateTimeFormatter;
+import org.threeten.bp.format.FormatStyle;
 import org.threeten.bp.temporal.ChronoUnit;
 import org.threeten.bp.temporal.TemporalAdjusters;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by Blaž Šolar on 24/01/14.
@@ -49,6 +58,16 @@ public class WeekDatePicker extends View {
 
     public static final String TAG = "DatePicker";
 
+    /**
+     * Tapping a day selects it.
+     */
+    public static final int SELECTION_MODE_SINGLE = 0;
+
+    /**
+     * First tap selects start and second tap end of a range.
+     */
+    public static final int SELECTION_MODE_RANGE = 1;
+
     /**
      * The coefficient by which to adjust (divide) the max fling velocity.
      */
@@ -59,6 +78,62 @@ public class WeekDatePicker extends View {
      */
     private static final int SELECTOR_ADJUSTMENT_DURATION_MILLIS = 800;
 
+    /**
+     * The duration of expanding to or collapsing from month grid.
+     */
+    private static final int EXPAND_DURATION_MILLIS = 250;
+
+    /**
+     * The duration for adjusting to week of focused day while a key is held down.
+     */
+    private static final int KEY_REPEAT_ADJUSTMENT_DURATION_MILLIS = 150;
+
+    /**
+     * Number of key repeats after which focus moves one more day or week per repeat.
+     */
+    private static final int KEY_REPEAT_ACCELERATION = 10;
+
+    /**
+     * Once picker settles this many weeks away from its first day, first day is moved to the
+     * visible week, so scroll offset stays small.
+     */
+    private static final int REBASE_WEEKS = 52;
+
+    /**
+     * Number of weeks on each side of drawn weeks whose models are built ahead of scrolling.
+     */
+    private static final int PREFETCH_WEEKS = 2;
+
+    /**
+     * Day index used when there is no day at some position.
+     */
+    private static final int NO_DAY = WeekDrawer.NO_DAY;
+
+    /**
+     * Added to epoch day to get accessibility virtual view id, so days before 1970 don't get
+     * negative ids that are reserved by {@link ExploreByTouchHelper}. Ids are epoch days, so they
+     * stay valid when first day moves.
+     */
+    private static final int VIRTUAL_VIEW_ID_OFFSET = 1 << 24;
+
+    // changes collected during batch update and applied by endUpdate()
+    private static final int PENDING_INVALIDATE = 1;
+    private static final int PENDING_STYLE = 1 << 1;
+    private static final int PENDING_ACCESSIBILITY = 1 << 2;
+    private static final int PENDING_DATE_SELECTED = 1 << 3;
+    private static final int PENDING_RANGE_SELECTED = 1 << 4;
+    private static final int PENDING_ADJUST_WEEK = 1 << 5;
+    private static final int PENDING_WEEK_CHANGED = 1 << 6;
+
+    private static final int[] NO_DAYS = new int[0];
+
+    private static final int MIN_INDICATOR_CAPACITY = 16;
+
+    /**
+     * Delivers results of indicator diffs computed in background.
+     */
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     /**
      * Determines speed during touch scrolling.
      */
@@ -76,64 +151,191 @@ public class WeekDatePicker extends View {
 
     private int touchSlop;
 
-    private final LocalDate today;
-    private LocalDate firstDay; // first day of week for current date
-    private final DayOfWeek firstDayOfWeek;
-    private final BoringLayout[] layouts = new BoringLayout[3 * 7]; // we are drawing 3 weeks at a time on screen
-    private final BoringLayout[] dayLabelLayouts = new BoringLayout[7];
-
-    @Nullable private final CharSequence[] labelNames;
-
-    private final TextPaint dayTextPaint;
-    private final TextPaint dayLabelTextPain;
-    private final Paint selectedDayColor;
-
-    private BoringLayout.Metrics dayMetrics;
-    private BoringLayout.Metrics dayLabelMetrics;
+    private Clock clock = Clock.systemDefaultZone();
+    private LocalDate today;
+    private LocalDate firstDay; // logical origin, all day and week indexes are relative to it
+    private int firstDayEpoch; // firstDay as epoch day
 
-    private ColorStateList dayTextColor;
-    private ColorStateList dayLabelTextColor;
-
-    private TextUtils.TruncateAt ellipsize;
+    /**
+     * Weeks from week of today or from date to first day. Public week indexes are relative to
+     * that week, so they don't change when first day moves.
+     */
+    private int originWeekOffset;
 
-    @Nullable private Drawable dayDrawable;
-    @Nullable private Drawable indicatorDrawable;
+    /**
+     * Draws weeks with style resources shared with all other pickers using the same style.
+     */
+    private final WeekDrawer drawer = new WeekDrawer(true);
 
     private int weekWidth;
     private int dayWidth;
 
+    /**
+     * Distance between starts of two neighbouring weeks, including divider.
+     */
+    private int weekPitch;
+
     private float lastDownEventX;
+    private float lastDownEventY;
 
     private OverScroller flingScrollerX;
     private OverScroller adjustScrollerX;
+    private OverScroller expandScroller;
 
     private int previousScrollerX;
 
+    // scroll extents derived from limits, recomputed only when limits or size change
+    private int minScrollX = Integer.MIN_VALUE;
+    private int maxScrollX = Integer.MAX_VALUE;
+
+    // glows at limits, only created once picker has limits
+    private EdgeEffect leftEdge;
+    private EdgeEffect rightEdge;
+
     private boolean scrollingX;
     private int scrollPositionStart;
 
+    // month grid, rows are drawn with the same drawer and layouts as the week strip
+    private boolean expandable; // off by default, so height of existing pickers never changes
+    private boolean expanded;
+    private boolean draggingY;
+    private int expandOffset; // height added to the strip, between 0 and expandRange
+    private int expandOffsetStart;
+    private int expandRange;
+    private int gridFirstWeek; // week index of the first grid row
+    private int gridRows;
+
     private OnWeekChanged onWeekChanged;
     private OnDateSelected onDateSelected;
+    private OnRangeSelected onRangeSelected;
+
+    private int selectionMode = SELECTION_MODE_SINGLE;
 
-    private final SparseBooleanArray dayIndicators = new SparseBooleanArray();
+    // selected range as epoch days, end is NO_DAY while range is being picked
+    private int rangeStart = NO_DAY;
+    private int rangeEnd = NO_DAY;
+
+    /**
+     * Indicator days as sorted epoch days, first {@link #indicatorCount} of them are used. Buffer
+     * grows as needed and days set one by one are edited in place.
+     */
+    @NonNull private int[] indicatorDays = NO_DAYS;
+    private int indicatorCount;
+
+    /**
+     * Immutable copy of indicator days handed to background diffs, day state snapshots and saved
+     * state, {@code null} once indicators changed after it was taken. It may share array with
+     * {@link #indicatorDays}, which is then copied before it is edited.
+     */
+    @Nullable private int[] indicatorSnapshot = NO_DAYS;
+    private int indicatorGeneration;
+
+    /**
+     * Days changed one by one while a submitted set is being diffed, keyed by epoch day. They are
+     * newer than the submitted set, so they are applied on top of it. {@code null} while nothing
+     * is submitted.
+     */
+    @Nullable private SparseBooleanArray indicatorEdits;
 
     private int selectedWeek;
     private int selectedDay;
-    private int pressedDay = Integer.MIN_VALUE;
+    private int pressedDay = NO_DAY;
+    private int focusedDay = NO_DAY; // only drawn while view has focus
 
-    private int dayDelta;
+    private final Rect dirtyRect = new Rect();
 
     private float dividerSize = 0;
-    private float labelPadding = 0;
-
-    @Nullable private Rect backgroundRect;
-    @Nullable private Rect indicatorRect;
 
     private TextDirectionHeuristicCompat textDir;
 
+    private final PickerTouchHelper touchHelper;
+
+    private boolean attached;
+
+    /**
+     * Picker is detached or hidden, so it does not animate and does not notify listeners.
+     */
+    private boolean suspended = true;
+
+    private int postedNotifications; // PENDING_* bits of listener notifications not delivered yet
+
+    // listener notifications read current state when they run, so a single instance of each is
+    // posted and it can be removed while picker is suspended
+
+    private final Runnable dateSelectedNotification = new Runnable() {
+        @Override
+        public void run() {
+            postedNotifications &= ~PENDING_DATE_SELECTED;
+            if (onDateSelected != null && selectedDay != NO_DAY) {
+                onDateSelected.onDateSelected(getDate(selectedDay));
+            }
+        }
+    };
+
+    private final Runnable rangeSelectedNotification = new Runnable() {
+        @Override
+        public void run() {
+            postedNotifications &= ~PENDING_RANGE_SELECTED;
+            if (onRangeSelected != null && rangeStart != NO_DAY && rangeEnd != NO_DAY) {
+                onRangeSelected.onRangeSelected(LocalDate.ofEpochDay(rangeStart),
+                        LocalDate.ofEpochDay(rangeEnd));
+            }
+        }
+    };
+
+    private final Runnable weekChangedNotification = new Runnable() {
+        @Override
+        public void run() {
+            postedNotifications &= ~PENDING_WEEK_CHANGED;
+            if (onWeekChanged != null) {
+                LocalDate firstDay = getDate(getWeekPositionFromCoordinates(getScrollX()) * 7);
+                onWeekChanged.onItemSelected(firstDay);
+            }
+        }
+    };
+
+    private int updateDepth;
+    private int pendingChanges; // PENDING_* bits
+
+    private int pendingMidnightTicks; // posted and not run or removed yet
+
+    private final Runnable midnightTick = new Runnable() {
+        @Override
+        public void run() {
+            pendingMidnightTicks--;
+            onDayChanged();
+            scheduleMidnightTick();
+        }
+    };
+
+    // last measure pass inputs and result
+    private int measuredHeightCache = -1;
+    private int measuredWidthSpec;
+    private int measuredHeightSpec;
+    private int measuredPaddingTop;
+    private int measuredPaddingBottom;
+    private float measuredTextSize;
+    private float measuredLabelTextSize;
+    private float measuredLabelPadding;
+    private int measuredExpandOffset;
+
     @Nullable private LocalDate fromDate;
     @Nullable private LocalDate toDate;
 
+    /**
+     * Week models drawn by {@link #onDraw(Canvas)}. Drawn weeks are built on main thread once day
+     * states change, weeks around them are prefetched in background. Frames are swapped in as a
+     * whole.
+     */
+    private final AtomicReference<WeekRenderModel.Frame> renderFrame =
+            new AtomicReference<>(WeekRenderModel.Frame.EMPTY);
+    private int renderGeneration;
+
+    // inputs of the last requested frame, weeks are epoch days of week starts
+    @Nullable private DayStateSnapshot requestedStates;
+    private int requestedFirstWeek;
+    private int requestedLastWeek;
+
     public WeekDatePicker(Context context) {
         this(context, null);
     }
@@ -145,87 +347,25 @@ public class WeekDatePicker extends View {
     public WeekDatePicker(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
 
-        // create the selector wheel paint
-        TextPaint paint = new TextPaint();
-        paint.setAntiAlias(true);
-        dayTextPaint = paint;
-
-        dayLabelTextPain = new TextPaint();
-        dayLabelTextPain.setAntiAlias(true);
-
-        selectedDayColor = new Paint();
-        selectedDayColor.setColor(Color.RED);
-        selectedDayColor.setStyle(Style.FILL);
-
         TypedArray a = context.getTheme().obtainStyledAttributes(
                 attrs,
                 R.styleable.WeekDatePicker,
                 defStyle, 0
         );
 
-        int ellipsize = 3; // END default value
-
         try {
-            dayTextColor = a.getColorStateList(R.styleable.WeekDatePicker_android_textColor);
-            if (dayTextColor == null) {
-                dayTextColor = ColorStateList.valueOf(Color.BLACK);
-            }
-
-            dayLabelTextColor = a.getColorStateList(R.styleable.WeekDatePicker_wdp_labelTextColor);
-            if (dayLabelTextColor == null) {
-                dayLabelTextColor = ColorStateList.valueOf(Color.BLACK);
-            }
+            drawer.readAttributes(a);
 
-            ellipsize = a.getInt(R.styleable.WeekDatePicker_android_ellipsize, ellipsize);
             dividerSize = a.getDimension(R.styleable.WeekDatePicker_wdp_dividerSize, dividerSize);
-
-            float textSize = a.getDimension(R.styleable.WeekDatePicker_android_textSize, -1);
-            if(textSize > -1) {
-                setTextSize(textSize);
-            }
-
-            float labelTextSize = a.getDimension(R.styleable.WeekDatePicker_wdp_labelTextSize, -1);
-            if (labelTextSize > -1) {
-                setLabelTextSize(labelTextSize);
-            }
-
-            labelPadding = a.getDimension(R.styleable.WeekDatePicker_wdp_labelPadding, labelPadding);
-
-            labelNames = a.getTextArray(R.styleable.WeekDatePicker_wdp_labelNames);
-
-            dayDrawable = a.getDrawable(R.styleable.WeekDatePicker_wdp_dayBackground);
-            indicatorDrawable = a.getDrawable(R.styleable.WeekDatePicker_wdp_indicatorDrawable);
-
-            int dayOfWeek = a.getInt(R.styleable.WeekDatePicker_wdp_firstDayOfWeek, DayOfWeek.SUNDAY.getValue());
-            firstDayOfWeek = DayOfWeek.of(dayOfWeek);
+            selectionMode = a.getInt(R.styleable.WeekDatePicker_wdp_selectionMode, selectionMode);
+            expandable = a.getBoolean(R.styleable.WeekDatePicker_wdp_expandable, expandable);
 
         } finally {
             a.recycle();
         }
 
-        switch (ellipsize) {
-            case 1:
-                setEllipsize(TextUtils.TruncateAt.START);
-                break;
-            case 2:
-                setEllipsize(TextUtils.TruncateAt.MIDDLE);
-                break;
-            case 3:
-                setEllipsize(TextUtils.TruncateAt.END);
-                break;
-            case 4:
-                setEllipsize(TextUtils.TruncateAt.MARQUEE);
-                break;
-        }
-
-        buildFontMetrics();
-        buildLabelFontMetrics();
-
 //        setWillNotDraw(false);
 
-        flingScrollerX = new OverScroller(context);
-        adjustScrollerX = new OverScroller(context, new DecelerateInterpolator(2.5f));
-
         // initialize constants
         ViewConfiguration configuration = ViewConfiguration.get(context);
         touchSlop = configuration.getScaledTouchSlop();
@@ -235,52 +375,72 @@ public class WeekDatePicker extends View {
 
         previousScrollerX = Integer.MIN_VALUE;
 
-        calculateItemSize(getWidth(), getHeight());
+        setFocusable(true);
 
-//        mTouchHelper = new PickerTouchHelper(this);
-//        ViewCompat.setAccessibilityDelegate(this, mTouchHelper);
+        // style, layouts and drawables are built once picker gets a size and is drawn
 
-        today = LocalDate.now();
-        firstDay = getFirstDay(0);
-        selectedDay = firstDay.until(today).getDays();
+        touchHelper = new PickerTouchHelper(this);
+        ViewCompat.setAccessibilityDelegate(this, touchHelper);
+
+        today = LocalDate.now(clock);
+        setFirstDay(getFirstDay(0));
+        selectedDay = (int) ChronoUnit.DAYS.between(firstDay, today);
 
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
 
-        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
-        int width = MeasureSpec.getSize(widthMeasureSpec);
-        int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+        int paddingTop = getPaddingTop();
+        int paddingBottom = getPaddingBottom();
+
+        // list layouts measure rows repeatedly with the same specs
+        if (measuredHeightCache < 0
+                || measuredWidthSpec != widthMeasureSpec
+                || measuredHeightSpec != heightMeasureSpec
+                || measuredPaddingTop != paddingTop
+                || measuredPaddingBottom != paddingBottom
+                || measuredTextSize != drawer.textSize
+                || measuredLabelTextSize != drawer.labelTextSize
+                || measuredLabelPadding != drawer.labelPadding
+                || measuredExpandOffset != expandOffset) {
+
+            measuredWidthSpec = widthMeasureSpec;
+            measuredHeightSpec = heightMeasureSpec;
+            measuredPaddingTop = paddingTop;
+            measuredPaddingBottom = paddingBottom;
+            measuredTextSize = drawer.textSize;
+            measuredLabelTextSize = drawer.labelTextSize;
+            measuredLabelPadding = drawer.labelPadding;
+            measuredExpandOffset = expandOffset;
+            measuredHeightCache = measureHeight(widthMeasureSpec, heightMeasureSpec);
+        }
 
-        for (int i = 0; i < 2; i++) {
+        setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), measuredHeightCache);
+    }
 
-            if (i != 0 && width == getMeasuredWidth()) {
-                break;
-            }
+    private int measureHeight(int widthMeasureSpec, int heightMeasureSpec) {
 
-            int height;
-            if (heightMode == MeasureSpec.EXACTLY) {
-                height = heightSize;
-            } else {
-                int labelTextHeight = Math.abs(dayLabelMetrics.ascent) + Math.abs(dayLabelMetrics.descent);
-                labelTextHeight += getPaddingTop() + getPaddingBottom();
+        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int heightSize = MeasureSpec.getSize(heightMeasureSpec);
 
-                int measuredWidth = getMeasuredWidth();
-                if (measuredWidth == 0) {
-                    measuredWidth = width;
-                }
+        if (heightMode == MeasureSpec.EXACTLY) {
+            return heightSize;
+        }
 
-                int totalHeight = (int) (labelTextHeight + measuredWidth / 7 / 3 * 2 + labelPadding);
+        Paint.FontMetricsInt dayLabelMetrics = drawer.getLabelFontMetrics();
+        int labelTextHeight = Math.abs(dayLabelMetrics.ascent) + Math.abs(dayLabelMetrics.descent);
+        labelTextHeight += getPaddingTop() + getPaddingBottom();
 
-                if (heightMode == MeasureSpec.AT_MOST) {
-                    height = Math.min(heightSize, totalHeight);
-                } else {
-                    height = totalHeight;
-                }
-            }
+        int totalHeight = (int) (labelTextHeight + width / drawer.getColumnCount() / 3 * 2
+                + drawer.labelPadding);
+        totalHeight += expandOffset;
 
-            setMeasuredDimension(width, height);
+        if (heightMode == MeasureSpec.AT_MOST) {
+            return Math.min(heightSize, totalHeight);
+        } else {
+            return totalHeight;
         }
     }
 
@@ -288,261 +448,654 @@ public class WeekDatePicker extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        float itemWithPadding = weekWidth + dividerSize;
+        if (!drawer.hasLayouts()) {
+            return;
+        }
+
+        drawer.loadDrawables(getContext());
+
+        drawer.pressedDay = pressedDay == NO_DAY ? NO_DAY : firstDayEpoch + pressedDay;
+        drawer.focusedDay = focusedDay == NO_DAY || !isFocused() ? NO_DAY : firstDayEpoch + focusedDay;
+
+        if (expandOffset > 0) {
+            drawGrid(canvas);
+            return;
+        }
 
         int saveCount = canvas.getSaveCount();
         canvas.save();
 
-        int weekOffset = getSelectedWeek() - 1;
-        float position = itemWithPadding * weekOffset;
+        int weekOffset = getWeekPositionFromCoordinates(getScrollX()) - 1;
+        float position = weekPitch * weekOffset;
+
+        WeekRenderModel.Frame frame = obtainRenderFrame(weekOffset, weekOffset + 2);
 
         canvas.translate(position, getPaddingTop());
 
         for (int i = 0; i < 3; i++) {
-            drawWeek(canvas, i * 7, weekOffset + i);
-            canvas.translate(itemWithPadding, 0);
+            drawer.drawWeek(canvas, getWeekModel(frame, weekOffset + i));
+            canvas.translate(weekPitch, 0);
         }
 
         canvas.restoreToCount(saveCount);
 
     }
 
-    private void drawWeek(Canvas canvas, int layoutIndex, int weekOffset) {
+    /**
+     * Draws label row and rows of month grid. Row of selected week slides from the strip position
+     * into its place in the grid, rows above it come out from under the labels.
+     */
+    private void drawGrid(Canvas canvas) {
 
         int saveCount = canvas.save();
 
-        int labelHeight = dayLabelLayouts[0].getHeight();
-        float circleRadius = dayWidth / 3;
-        int centerY = layouts[0].getHeight() / 2;
-        float dateLineOffset = circleRadius - centerY;
-
-        for (int i = 0; i < 7; i++) {
-
-            int itemIndex = weekOffset * 7 + i;
-            BoringLayout layout = layouts[layoutIndex + i];
-            BoringLayout labelLayout = dayLabelLayouts[i];
+        // grid does not scroll horizontally
+        canvas.translate(getScrollX(), getPaddingTop());
 
-            dayLabelTextPain.setColor(getTextColor(dayLabelTextColor, itemIndex));
-            labelLayout.draw(canvas);
+        int anchorWeek = Math.min(Math.max(selectedWeek, gridFirstWeek), gridFirstWeek + gridRows - 1);
+        WeekRenderModel.Frame frame = obtainRenderFrame(gridFirstWeek, gridFirstWeek + gridRows - 1);
+        drawer.drawLabels(canvas, getWeekModel(frame, anchorWeek));
 
-            dayTextPaint.setColor(getTextColor(dayTextColor, itemIndex));
+        float labelsHeight = drawer.getLabelsHeight();
+        int rowHeight = drawer.getRowHeight();
+        canvas.clipRect(0, labelsHeight, weekWidth, getHeight() - getPaddingTop());
 
-            int count = canvas.save();
-            canvas.translate(0, labelHeight + dateLineOffset + labelPadding);
-
-            if (dayDrawable != null) {
-                dayDrawable.setBounds(backgroundRect);
-                dayDrawable.setState(getItemDrawableState(itemIndex));
-                dayDrawable.draw(canvas);
-            }
+        int gridTop = getGridTop() - getPaddingTop();
+        for (int row = 0; row < gridRows; row++) {
 
-            if (indicatorDrawable != null && dayIndicators.get(itemIndex - dayDelta, false)) {
-                indicatorDrawable.setBounds(indicatorRect);
-                indicatorDrawable.setState(getItemDrawableState(itemIndex));
-                indicatorDrawable.draw(canvas);
+            int rowTop = gridTop + row * rowHeight;
+            if (rowTop + rowHeight <= labelsHeight) {
+                continue;
             }
 
-            layout.draw(canvas);
-
+            int count = canvas.save();
+            canvas.translate(0, rowTop);
+            drawer.drawDays(canvas, getWeekModel(frame, gridFirstWeek + row));
             canvas.restoreToCount(count);
-
-            canvas.translate(dayWidth, 0);
         }
 
         canvas.restoreToCount(saveCount);
-
     }
 
-    private LocalDate getRelativeFirstDay(int weekOffset) {
-        weekOffset = getSelectedWeek() + weekOffset;
-        return getFirstDay(weekOffset);
-    }
+    /**
+     * Returns frame of week models for drawn weeks. Frame built from older day states would draw
+     * stale days, so drawn weeks are built right away when states changed. Weeks around them are
+     * requested in background when states changed or drawn weeks are not covered by the last
+     * request anymore.
+     *
+     * @param firstWeek Index of the first drawn week
+     * @param lastWeek Index of the last drawn week
+     */
+    @NonNull private WeekRenderModel.Frame obtainRenderFrame(int firstWeek, int lastWeek) {
 
-    private LocalDate getFirstDay(int weekOffset) {
-        return getFirstDay().plusWeeks(weekOffset).with(TemporalAdjusters.previousOrSame(firstDayOfWeek));
-    }
+        DayStateSnapshot states = getDayStateSnapshot();
+        int firstWeekEpoch = firstDayEpoch + firstWeek * 7;
+        int lastWeekEpoch = firstDayEpoch + lastWeek * 7;
 
-    @NonNull private LocalDate getFirstDay() {
-        if (fromDate != null) {
-            return fromDate;
-        } else {
-            return today;
+        WeekRenderModel.Frame frame = renderFrame.get();
+        if (frame.states != states) {
+            frame = WeekRenderModel.Frame.build(++renderGeneration, states, drawer.firstDayOfWeek,
+                    drawer.hasWeekColumn(), firstWeekEpoch, lastWeekEpoch);
+            publishRenderFrame(frame);
         }
-    }
 
-    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
-    @Override
-    public void onRtlPropertiesChanged(int layoutDirection) {
-        super.onRtlPropertiesChanged(layoutDirection);
+        // requested after drawn weeks, so prefetched frame gets newer generation and replaces them
+        if (states != requestedStates
+                || firstWeekEpoch < requestedFirstWeek || lastWeekEpoch > requestedLastWeek) {
+            requestRenderFrame(states, firstWeekEpoch - PREFETCH_WEEKS * 7,
+                    lastWeekEpoch + PREFETCH_WEEKS * 7);
+        }
 
-        textDir = getTextDirectionHeuristic();
+        return frame;
     }
 
-    public void setLimits(@Nullable LocalDate from, @Nullable LocalDate to) {
-
-        readjustIndexes(from);
-
-        fromDate = from;
-        toDate = to;
-
-        firstDay = getFirstDay(0);
+    /**
+     * Returns model of week from passed frame. Weeks the frame does not contain yet, e.g. while
+     * scrolling ahead of prefetched weeks, are built on the spot.
+     */
+    @NonNull private WeekRenderModel getWeekModel(@NonNull WeekRenderModel.Frame frame, int week) {
+        int weekStartEpoch = firstDayEpoch + week * 7;
 
-        invalidate();
+        WeekRenderModel model = frame.get(weekStartEpoch);
+        if (model == null) {
+            model = WeekRenderModel.build(weekStartEpoch, requestedStates, drawer.firstDayOfWeek,
+                    drawer.hasWeekColumn());
+        }
+        return model;
     }
 
-    private void readjustIndexes(@Nullable LocalDate newDate) {
-
-        LocalDate from = newDate == null ? today : newDate;
-        LocalDate to = fromDate == null ? today : fromDate;
-
-        int delta = from.until(to).getDays();
-        selectedDay += delta;
-        dayDelta = delta;
-
+    /**
+     * Builds models of weeks between passed week starts in background and publishes them once
+     * built. Prefetched frame is built from the same states as drawn weeks, so publishing it does
+     * not need a redraw.
+     */
+    private void requestRenderFrame(@NonNull final DayStateSnapshot states, final int firstWeekEpoch,
+            final int lastWeekEpoch) {
+
+        requestedStates = states;
+        requestedFirstWeek = firstWeekEpoch;
+        requestedLastWeek = lastWeekEpoch;
+
+        final int generation = ++renderGeneration;
+        final DayOfWeek firstDayOfWeek = drawer.firstDayOfWeek;
+        final boolean withInfo = drawer.hasWeekColumn();
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                publishRenderFrame(WeekRenderModel.Frame.build(generation, states, firstDayOfWeek,
+                        withInfo, firstWeekEpoch, lastWeekEpoch));
+            }
+        });
     }
 
-    private TextDirectionHeuristicCompat getTextDirectionHeuristic() {
-
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
-
-            return TextDirectionHeuristicsCompat.FIRSTSTRONG_LTR;
-
-        } else {
-
-            // Always need to resolve layout direction first
-            final boolean defaultIsRtl = (getLayoutDirection() == LAYOUT_DIRECTION_RTL);
+    /**
+     * Swaps in passed frame unless a frame with newer generation was already published. Can be
+     * called from any thread.
+     */
+    private void publishRenderFrame(@NonNull WeekRenderModel.Frame frame) {
 
-            switch (getTextDirection()) {
-                default:
-                case TEXT_DIRECTION_FIRST_STRONG:
-                    return (defaultIsRtl ? TextDirectionHeuristicsCompat.FIRSTSTRONG_RTL :
-                            TextDirectionHeuristicsCompat.FIRSTSTRONG_LTR);
-                case TEXT_DIRECTION_ANY_RTL:
-                    return TextDirectionHeuristicsCompat.ANYRTL_LTR;
-                case TEXT_DIRECTION_LTR:
-                    return TextDirectionHeuristicsCompat.LTR;
-                case TEXT_DIRECTION_RTL:
-                    return TextDirectionHeuristicsCompat.RTL;
-                case TEXT_DIRECTION_LOCALE:
-                    return TextDirectionHeuristicsCompat.LOCALE;
+        WeekRenderModel.Frame current;
+        do {
+            current = renderFrame.get();
+            if (current.generation > frame.generation) {
+                return;
             }
-        }
+        } while (!renderFrame.compareAndSet(current, frame));
     }
 
-    private void remakeLayout() {
-
-        if (getWidth() > 0)  {
+    /**
+     * Returns snapshot of current day states. Snapshot is only taken again once states change.
+     */
+    @NonNull private DayStateSnapshot getDayStateSnapshot() {
+
+        boolean rangeMode = selectionMode == SELECTION_MODE_RANGE;
+        int selectedEpoch = selectedDay == NO_DAY ? NO_DAY : firstDayEpoch + selectedDay;
+        int fromEpoch = fromDate == null ? NO_DAY : (int) fromDate.toEpochDay();
+        int toEpoch = toDate == null ? NO_DAY : (int) toDate.toEpochDay();
+        int[] indicators = getIndicatorSnapshot();
+
+        DayStateSnapshot states = requestedStates;
+        if (states == null || !states.matches(rangeMode, selectedEpoch, rangeStart, rangeEnd,
+                fromEpoch, toEpoch, indicators)) {
+            states = new DayStateSnapshot(rangeMode, selectedEpoch, rangeStart, rangeEnd,
+                    fromEpoch, toEpoch, indicators);
+        }
+        return states;
+    }
 
-            LocalDate day = getRelativeFirstDay(-1);
+    /**
+     * Returns top of the first grid row in view coordinates for current expand offset.
+     */
+    private int getGridTop() {
 
-            for (int i = 0; i < layouts.length; i++) {
+        int anchorRow = Math.min(Math.max(selectedWeek - gridFirstWeek, 0), gridRows - 1);
+        int collapsed = anchorRow * drawer.getRowHeight();
+        int hidden = expandRange == 0 ? 0 : collapsed * (expandRange - expandOffset) / expandRange;
 
-                String dayText = String.valueOf(day.getDayOfMonth());
-                if (layouts[i] == null) {
-                    layouts[i] = BoringLayout.make(dayText, dayTextPaint, dayWidth,
-                            Layout.Alignment.ALIGN_CENTER, 1f, 1f, dayMetrics, false, ellipsize,
-                            dayWidth);
-                } else {
-                    layouts[i].replaceOrMake(dayText, dayTextPaint, dayWidth,
-                            Layout.Alignment.ALIGN_CENTER, 1f, 1f, dayMetrics, false, ellipsize,
-                            dayWidth);
-                }
+        return getPaddingTop() + (int) drawer.getLabelsHeight() - hidden;
+    }
 
-                day = day.plusDays(1);
-            }
+    /**
+     * Computes rows of month containing selected week. Week belongs to month of its middle day.
+     */
+    private void updateGrid() {
 
-            DayOfWeek dayOfWeek = firstDayOfWeek; // first index is 1
-            for (int i = 0; i < dayLabelLayouts.length; i++) {
+        LocalDate weekMiddle = getDate(selectedWeek * 7 + 3);
+        LocalDate monthStart = weekMiddle.withDayOfMonth(1);
+        LocalDate monthEnd = weekMiddle.withDayOfMonth(weekMiddle.lengthOfMonth());
 
-                CharSequence name;
-                if (labelNames == null) {
-                    name = dayOfWeek.getDisplayName(TextStyle.SHORT, Locale.getDefault());
-                } else {
-                    int index = dayOfWeek.getValue() - 1;
-                    name = labelNames[index];
-                }
+        gridFirstWeek = getWeekForDay(getDayForDate(monthStart));
+        gridRows = getWeekForDay(getDayForDate(monthEnd)) - gridFirstWeek + 1;
+        expandRange = (gridRows - 1) * drawer.getRowHeight();
+    }
 
+    public boolean isExpandable() {
+        return expandable;
+    }
 
-                if (dayLabelLayouts[i] == null) {
-                    dayLabelLayouts[i] = BoringLayout.make(name, dayLabelTextPain, dayWidth,
-                            Layout.Alignment.ALIGN_CENTER, 1f, 1f, dayLabelMetrics, false, ellipsize,
-                            dayWidth);
-                } else {
-                    dayLabelLayouts[i].replaceOrMake(name, dayLabelTextPain, dayWidth,
-                            Layout.Alignment.ALIGN_CENTER, 1f, 1f, dayLabelMetrics, false, ellipsize,
-                            dayWidth);
-                }
+    /**
+     * Allows expanding picker into month grid with a vertical drag or {@link #setExpanded}.
+     * Disabled by default. Disabling it collapses expanded picker right away.
+     */
+    public void setExpandable(boolean expandable) {
+        if (this.expandable == expandable) {
+            return;
+        }
 
-                dayOfWeek = dayOfWeek.plus(1);
+        this.expandable = expandable;
 
+        if (!expandable) {
+            draggingY = false;
+            if (expanded || expandOffset > 0) {
+                setExpanded(false, false);
             }
-
         }
+    }
 
+    public boolean isExpanded() {
+        return expanded;
     }
 
     /**
-     * Calculates text color for specified item based on its position and state.
+     * Expands picker into month grid of selected week or collapses it back to a single week. Picker
+     * grows by changing its measured height, so its height should not be exact. Picker only
+     * expands when it is {@link #setExpandable(boolean) expandable}.
      *
-     * @param item Index of item to get text color for
-     * @return Item text color
+     * @param animate Whether change should be animated
      */
-    private int getTextColor(ColorStateList color, int item) {
-
-        List<Integer> states = new ArrayList<>();
+    public void setExpanded(boolean expanded, boolean animate) {
 
-        if (isItemEnabled(item)) {
-            states.add(android.R.attr.state_enabled);
+        if (expanded && !expandable) {
+            return;
         }
 
-        if (isItemPressed(item)) {
-            states.add(android.R.attr.state_pressed);
+        if (expandOffset == 0 && (expandScroller == null || expandScroller.isFinished())) {
+            updateGrid();
         }
 
-        if (isItemSelected(item)) {
-            states.add(android.R.attr.state_selected);
-        }
+        this.expanded = expanded;
+        int target = expanded ? expandRange : 0;
 
-        int[] finalState = new int[states.size()];
-        if (states.size() > 0) {
-            for (int i = 0; i < states.size(); i++) {
-                finalState[i] = states.get(i);
-            }
+        ensureScrollers();
+        expandScroller.forceFinished(true);
+
+        if (animate) {
+            expandScroller.startScroll(0, expandOffset, 0, target - expandOffset, EXPAND_DURATION_MILLIS);
+            ViewCompat.postInvalidateOnAnimation(this);
+        } else {
+            setExpandOffset(target);
         }
+    }
 
-        return color.getColorForState(finalState, color.getDefaultColor());
+    private void setExpandOffset(int offset) {
 
-    }
+        if (expandOffset != offset) {
+            expandOffset = offset;
 
-    private int[] getItemDrawableState(int item) {
+            if (offset == 0 || offset == expandRange) {
+                touchHelper.invalidateRoot();
+            }
 
-        List<Integer> state = new ArrayList<>();
-        if (isItemEnabled(item)) {
-            state.add(android.R.attr.state_enabled);
+            requestLayout();
+            invalidate();
         }
+    }
 
-        if (isItemSelected(item)) {
-            state.add(android.R.attr.state_selected);
-        }
+    private void computeExpand() {
 
-        if (isItemPressed(item)) {
-            state.add(android.R.attr.state_pressed);
+        OverScroller scroller = expandScroller;
+        if (scroller == null || scroller.isFinished()) {
+            return;
         }
 
-        int[] intState = new int[state.size()];
-        for (int i = 0; i < state.size(); i++) {
-            intState[i] = state.get(i);
+        if (scroller.computeScrollOffset()) {
+            setExpandOffset(scroller.getCurrY());
+            ViewCompat.postInvalidateOnAnimation(this);
         }
-        return intState;
+    }
 
+    private LocalDate getFirstDay(int weekOffset) {
+        return getFirstDay().plusWeeks(weekOffset).with(TemporalAdjusters.previousOrSame(drawer.firstDayOfWeek));
     }
 
-    private boolean isItemPressed(int item) {
-        return item == pressedDay;
+    private void setFirstDay(@NonNull LocalDate firstDay) {
+        this.firstDay = firstDay;
+        firstDayEpoch = (int) firstDay.toEpochDay();
     }
 
-    private boolean isItemSelected(int item) {
-        return item == selectedDay;
+    @NonNull private LocalDate getFirstDay() {
+        if (fromDate != null) {
+            return fromDate;
+        } else {
+            return today;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    @Override
+    public void onRtlPropertiesChanged(int layoutDirection) {
+        super.onRtlPropertiesChanged(layoutDirection);
+
+        textDir = getTextDirectionHeuristic();
+
+        boolean rtl = layoutDirection == LAYOUT_DIRECTION_RTL;
+        if (rtl != drawer.isRtl()) {
+            drawer.setRtl(rtl);
+            invalidate();
+        }
+    }
+
+    public void setLimits(@Nullable LocalDate from, @Nullable LocalDate to) {
+
+        fromDate = from;
+        toDate = to;
+
+        reanchor(getFirstDay(0));
+        originWeekOffset = 0;
+
+        // clamp to new limits
+        updateScrollBounds();
+        scrollTo(getScrollX(), 0);
+
+        invalidateDays();
+    }
+
+    /**
+     * Sets time source used to determine today. Picker starts over at today of passed clock, which
+     * gets selected and its week shown, as if picker was created with it. At every following
+     * midnight of passed clock it re-anchors itself while keeping the same days on screen, so a
+     * fixed clock makes it fully deterministic.
+     */
+    public void setClock(@NonNull Clock clock) {
+        this.clock = clock;
+
+        today = LocalDate.now(clock);
+        setFirstDay(getFirstDay(0));
+        originWeekOffset = 0;
+        updateScrollBounds();
+
+        bind(today, today);
+        scheduleMidnightTick();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        attached = true;
+        updateSuspended();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        attached = false;
+        updateSuspended();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+
+        updateSuspended();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+
+        updateSuspended();
+    }
+
+    private void updateSuspended() {
+
+        // called by super constructor before fields are initialized
+        if (touchHelper == null) {
+            return;
+        }
+
+        boolean suspended = !attached || getWindowVisibility() != VISIBLE || !isShown();
+        if (this.suspended != suspended) {
+            this.suspended = suspended;
+
+            if (suspended) {
+                suspend();
+            } else {
+                resume();
+            }
+        }
+    }
+
+    /**
+     * Finishes all animations at their final state and stops everything that would use frames or
+     * CPU while picker is not visible.
+     */
+    private void suspend() {
+
+        removeCallbacks(midnightTick);
+        pendingMidnightTicks = 0;
+
+        // notifications are delivered again once picker resumes
+        removeCallbacks(dateSelectedNotification);
+        removeCallbacks(rangeSelectedNotification);
+        removeCallbacks(weekChangedNotification);
+
+        if (flingScrollerX != null) {
+            finishScroller(flingScrollerX);
+            finishScroller(adjustScrollerX);
+
+            if (!expandScroller.isFinished()) {
+                setExpandOffset(expandScroller.getFinalY());
+                expandScroller.abortAnimation();
+            }
+        }
+
+        if (scrollingX) {
+            scrollingX = false;
+            adjustToSelectedWeekNow(getWeekPositionFromCoordinates(getScrollX()));
+        }
+
+        if (draggingY) {
+            draggingY = false;
+            setExpanded(expandOffset > expandRange / 2, false);
+        }
+
+        pressedDay = NO_DAY;
+
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+
+        if (leftEdge != null) {
+            leftEdge.finish();
+            rightEdge.finish();
+        }
+
+        touchHelper.trimMemory();
+    }
+
+    private void resume() {
+
+        // day might have changed while suspended
+        onDayChanged();
+        scheduleMidnightTick();
+
+        if ((postedNotifications & PENDING_DATE_SELECTED) != 0) {
+            post(dateSelectedNotification);
+        }
+        if ((postedNotifications & PENDING_RANGE_SELECTED) != 0) {
+            post(rangeSelectedNotification);
+        }
+        if ((postedNotifications & PENDING_WEEK_CHANGED) != 0) {
+            post(weekChangedNotification);
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Jumps to final position of running scroller.
+     */
+    private void finishScroller(OverScroller scroller) {
+
+        if (scroller.isFinished()) {
+            return;
+        }
+
+        int previousX = previousScrollerX == Integer.MIN_VALUE ? scroller.getStartX() : previousScrollerX;
+        scrollBy(scroller.getFinalX() - previousX, 0);
+        scroller.abortAnimation();
+
+        adjustToSelectedWeekNow(getWeekPositionFromCoordinates(getScrollX()));
+    }
+
+    /**
+     * Settles picker on passed week without animation.
+     */
+    private void adjustToSelectedWeekNow(int week) {
+
+        if (selectedWeek != week) {
+            selectedWeek = week;
+            notifyWeekChange();
+        }
+
+        scrollToItem(week);
+        rebase();
+    }
+
+    /**
+     * Posts listener notification, unless it is already waiting to be delivered. Suspended picker
+     * only records it and posts it when it resumes.
+     */
+    private void postNotification(int notification, Runnable runnable) {
+
+        if ((postedNotifications & notification) != 0) {
+            return;
+        }
+
+        postedNotifications |= notification;
+        if (!suspended) {
+            post(runnable);
+        }
+    }
+
+    /**
+     * Posts a single tick at next midnight of {@link #clock}.
+     */
+    private void scheduleMidnightTick() {
+
+        removeCallbacks(midnightTick);
+        pendingMidnightTicks = 0;
+
+        if (suspended) {
+            return;
+        }
+
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay(now.getZone());
+
+        postDelayed(midnightTick, Duration.between(now, midnight).toMillis());
+        pendingMidnightTicks++;
+    }
+
+    /**
+     * Re-anchors picker to today of {@link #clock} if day changed. Package private, so tests can
+     * roll picker over without waiting for midnight tick.
+     */
+    void onDayChanged() {
+
+        LocalDate now = LocalDate.now(clock);
+        if (now.equals(today)) {
+            return;
+        }
+
+        today = now;
+
+        // with limits first day is anchored to from date, which does not depend on today
+        if (fromDate == null) {
+            reanchor(getFirstDay(0));
+            originWeekOffset = 0;
+        }
+    }
+
+    /**
+     * Moves first day to visible week once picker is far away from it. All positions are exact
+     * integers, so moving it never causes a visible jump.
+     */
+    private void rebase() {
+        if (Math.abs(selectedWeek) >= REBASE_WEEKS && !scrollingX && !draggingY && expandOffset == 0) {
+            int weeks = selectedWeek;
+            reanchor(getDate(weeks * 7));
+            originWeekOffset += weeks;
+        }
+    }
+
+    /**
+     * Moves first day to passed date while keeping the same days on screen. Only indexes and scroll
+     * position are shifted, nothing is rebuilt.
+     */
+    private void reanchor(@NonNull LocalDate newFirstDay) {
+
+        int delta = (int) newFirstDay.toEpochDay() - firstDayEpoch; // always whole weeks
+        if (delta == 0) {
+            return;
+        }
+
+        int weeks = delta / 7;
+
+        if (selectedDay != NO_DAY) {
+            selectedDay -= delta;
+        }
+        if (focusedDay != NO_DAY) {
+            focusedDay -= delta;
+        }
+        pressedDay = NO_DAY;
+        selectedWeek -= weeks;
+
+        setFirstDay(newFirstDay);
+        updateScrollBounds();
+        scrollTo(getScrollX() - weeks * weekPitch, 0);
+
+        invalidateAccessibility();
+        invalidateDays();
+    }
+
+    private TextDirectionHeuristicCompat getTextDirectionHeuristic() {
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+
+            return TextDirectionHeuristicsCompat.FIRSTSTRONG_LTR;
+
+        } else {
+
+            // Always need to resolve layout direction first
+            final boolean defaultIsRtl = (getLayoutDirection() == LAYOUT_DIRECTION_RTL);
+
+            switch (getTextDirection()) {
+                default:
+                case TEXT_DIRECTION_FIRST_STRONG:
+                    return (defaultIsRtl ? TextDirectionHeuristicsCompat.FIRSTSTRONG_RTL :
+                            TextDirectionHeuristicsCompat.FIRSTSTRONG_LTR);
+                case TEXT_DIRECTION_ANY_RTL:
+                    return TextDirectionHeuristicsCompat.ANYRTL_LTR;
+                case TEXT_DIRECTION_LTR:
+                    return TextDirectionHeuristicsCompat.LTR;
+                case TEXT_DIRECTION_RTL:
+                    return TextDirectionHeuristicsCompat.RTL;
+                case TEXT_DIRECTION_LOCALE:
+                    return TextDirectionHeuristicsCompat.LOCALE;
+            }
+        }
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+
+        if (newConfig.locale != null && !newConfig.locale.equals(drawer.locale)) {
+            drawer.locale = newConfig.locale;
+
+            WeekdayNames.invalidate();
+            drawer.updateStyle();
+            touchHelper.onLocaleChanged();
+            invalidate();
+        }
+    }
+
+    private boolean isItemSelected(int item) {
+        if (selectionMode == SELECTION_MODE_RANGE) {
+            int epochDay = firstDayEpoch + item;
+            return rangeStart != NO_DAY && epochDay >= rangeStart && epochDay <= getRangeEndEpoch();
+        } else {
+            return item == selectedDay;
+        }
+    }
+
+    private int getRangeEndEpoch() {
+        return rangeEnd == NO_DAY ? rangeStart : rangeEnd;
     }
 
     private boolean isItemEnabled(int item) {
@@ -561,8 +1114,6 @@ public class WeekDatePicker extends View {
         super.onSizeChanged(w, h, oldw, oldh);
 
         calculateItemSize(w, h);
-        calculateBackgroundRect();
-        calculateIndicatorRect();
     }
 
     @Override
@@ -575,25 +1126,51 @@ public class WeekDatePicker extends View {
             velocityTracker = VelocityTracker.obtain();
         }
         velocityTracker.addMovement(event);
+        ensureScrollers();
 
         int action = event.getActionMasked();
         switch (action) {
             case MotionEvent.ACTION_MOVE:
 
                 float currentMoveX = event.getX();
+                float currentMoveY = event.getY();
 
                 int deltaMoveX = (int) (lastDownEventX - currentMoveX);
+                int deltaMoveY = (int) (currentMoveY - lastDownEventY);
+
+                if (expandable && !draggingY && !scrollingX && Math.abs(deltaMoveY) > touchSlop
+                        && Math.abs(deltaMoveY) > Math.abs(deltaMoveX)) {
+
+                    if (expandOffset == 0 && expandScroller.isFinished()) {
+                        updateGrid();
+                    }
+                    expandScroller.forceFinished(true);
+
+                    draggingY = true;
+                    pressedDay = NO_DAY;
+                    getParent().requestDisallowInterceptTouchEvent(true);
+                    expandOffsetStart = expandOffset;
+                    lastDownEventY = currentMoveY;
+                    deltaMoveY = 0;
+                }
+
+                if (draggingY) {
+                    setExpandOffset(Math.min(Math.max(expandOffsetStart + deltaMoveY, 0), expandRange));
+                    break;
+                }
 
-                if(scrollingX || Math.abs(deltaMoveX) > touchSlop) {
+                // month grid does not scroll horizontally
+                if(expandOffset == 0 && (scrollingX || Math.abs(deltaMoveX) > touchSlop)) {
 
                     if(!scrollingX) {
                         deltaMoveX = 0;
-                        pressedDay = Integer.MIN_VALUE;
+                        pressedDay = NO_DAY;
                         scrollingX = true;
                         getParent().requestDisallowInterceptTouchEvent(true);
                         scrollPositionStart = getScrollX();
                     }
 
+                    pullEdges(deltaMoveX);
                     scrollBy(deltaMoveX, 0);
 
                     lastDownEventX = currentMoveX;
@@ -613,9 +1190,11 @@ public class WeekDatePicker extends View {
                 }
 
                 lastDownEventX = event.getX();
+                lastDownEventY = event.getY();
+                draggingY = false;
 
                 if(!scrollingX) {
-                    pressedDay = getDayPositionFromTouch(event.getX());
+                    pressedDay = getDayIndexAt(event.getX(), event.getY());
                 }
                 invalidate();
 
@@ -626,14 +1205,27 @@ public class WeekDatePicker extends View {
                 velocityTracker.computeCurrentVelocity(500, maximumFlingVelocity);
                 int initialVelocityX = (int) velocityTracker.getXVelocity();
 
-                if(scrollingX && Math.abs(initialVelocityX) > minimumFlingVelocity) {
+                if (draggingY) {
+                    int initialVelocityY = (int) velocityTracker.getYVelocity();
+                    draggingY = false;
+
+                    if (Math.abs(initialVelocityY) > minimumFlingVelocity) {
+                        setExpanded(initialVelocityY > 0, true);
+                    } else {
+                        setExpanded(expandOffset > expandRange / 2, true);
+                    }
+                } else if(scrollingX && Math.abs(initialVelocityX) > minimumFlingVelocity) {
                     flingX(initialVelocityX);
                 } else {
                     float positionX = event.getX();
                     if(!scrollingX) {
-                        int itemPos = getDayPositionFromTouch(positionX);
-                        if (isItemEnabled(itemPos)) {
-                            selectDay(itemPos);
+                        int itemPos = getDayIndexAt(positionX, event.getY());
+                        if (itemPos != NO_DAY && isItemEnabled(itemPos)) {
+                            if (selectionMode == SELECTION_MODE_RANGE) {
+                                selectRangeDay(itemPos);
+                            } else {
+                                selectDay(itemPos);
+                            }
                         }
                     } else if(scrollingX) {
                         finishScrolling();
@@ -644,7 +1236,14 @@ public class WeekDatePicker extends View {
                 this.velocityTracker = null;
 
             case MotionEvent.ACTION_CANCEL:
-                pressedDay = Integer.MIN_VALUE;
+                releaseEdges();
+
+                if (draggingY) {
+                    draggingY = false;
+                    setExpanded(expandOffset > expandRange / 2, true);
+                }
+
+                pressedDay = NO_DAY;
                 invalidate();
                 break;
         }
@@ -658,208 +1257,1069 @@ public class WeekDatePicker extends View {
     }
 
     @Override public void scrollTo(int x, int y) {
-        if (fromDate != null && x < 0) {
-            x = 0;
+        super.scrollTo(Math.min(Math.max(x, minScrollX), maxScrollX), y);
+    }
+
+    /**
+     * Recomputes scroll extents. Scrolling starts at week containing from date and ends at week
+     * containing to date.
+     */
+    private void updateScrollBounds() {
+
+        minScrollX = fromDate == null || firstDay == null
+                ? Integer.MIN_VALUE : getWeekForDay(getDayForDate(fromDate)) * weekPitch;
+        maxScrollX = toDate == null || firstDay == null
+                ? Integer.MAX_VALUE : getWeekForDay(getDayForDate(toDate)) * weekPitch;
+
+        if (leftEdge == null && (fromDate != null || toDate != null)) {
+            Context context = getContext();
+            leftEdge = new EdgeEffect(context);
+            rightEdge = new EdgeEffect(context);
         }
+    }
 
-        if (toDate != null) {
-            float totalWidth = (weekWidth + dividerSize) * ChronoUnit.WEEKS.between(getFirstDay(), toDate);
+    private boolean isScrollBounded() {
+        return minScrollX != Integer.MIN_VALUE && maxScrollX != Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected int computeHorizontalScrollRange() {
+        if (isScrollBounded()) {
+            return maxScrollX - minScrollX + getWidth();
+        } else {
+            return super.computeHorizontalScrollRange();
+        }
+    }
+
+    @Override
+    protected int computeHorizontalScrollOffset() {
+        if (isScrollBounded()) {
+            return getScrollX() - minScrollX;
+        } else {
+            return super.computeHorizontalScrollOffset();
+        }
+    }
+
+    @Override
+    protected int computeHorizontalScrollExtent() {
+        return getWidth();
+    }
+
+    /**
+     * Pulls glow at a limit when drag would scroll past it.
+     */
+    private void pullEdges(int deltaX) {
+
+        if (leftEdge == null || getOverScrollMode() == OVER_SCROLL_NEVER) {
+            return;
+        }
 
-            if (x > totalWidth) {
-                x = (int) totalWidth;
+        int x = getScrollX() + deltaX;
+        if (x < minScrollX) {
+            leftEdge.onPull((float) (minScrollX - x) / getWidth());
+            if (!rightEdge.isFinished()) {
+                rightEdge.onRelease();
             }
+        } else if (x > maxScrollX) {
+            rightEdge.onPull((float) (x - maxScrollX) / getWidth());
+            if (!leftEdge.isFinished()) {
+                leftEdge.onRelease();
+            }
+        }
+
+        if (!leftEdge.isFinished() || !rightEdge.isFinished()) {
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
+    private void releaseEdges() {
+        if (leftEdge != null) {
+            leftEdge.onRelease();
+            rightEdge.onRelease();
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        super.draw(canvas);
+
+        if (leftEdge == null) {
+            return;
         }
 
-        super.scrollTo(x, y);
+        boolean invalidate = false;
+        int width = getWidth();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+
+        if (!leftEdge.isFinished()) {
+            int restoreCount = canvas.save();
+            canvas.rotate(270);
+            canvas.translate(-height + getPaddingTop(), getScrollX());
+            leftEdge.setSize(height, width);
+            invalidate = leftEdge.draw(canvas);
+            canvas.restoreToCount(restoreCount);
+        }
+
+        if (!rightEdge.isFinished()) {
+            int restoreCount = canvas.save();
+            canvas.rotate(90);
+            canvas.translate(-getPaddingTop(), -(getScrollX() + width));
+            rightEdge.setSize(height, width);
+            invalidate |= rightEdge.draw(canvas);
+            canvas.restoreToCount(restoreCount);
+        }
+
+        if (invalidate) {
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
     }
 
     private void selectDay(final int day) {
 
         if (selectedDay != day) {
 
+            int previousDay = selectedDay;
             selectedDay = day;
 
-            // post to the UI Thread to avoid potential interference with the OpenGL Thread
-            if (onDateSelected != null) {
-                final LocalDate date = getDate(day);
-                post(new Runnable() {
-                    @Override
-                    public void run() {
-                        onDateSelected.onDateSelected(date);
-                    }
-                });
+            if (updateDepth > 0) {
+                pendingChanges |= PENDING_ACCESSIBILITY | PENDING_DATE_SELECTED | PENDING_INVALIDATE;
+            } else {
+                if (previousDay != NO_DAY) {
+                    touchHelper.invalidateVirtualView(toVirtualViewId(previousDay));
+                }
+                touchHelper.invalidateVirtualView(toVirtualViewId(day));
+
+                notifyDateSelected();
+                invalidate();
             }
 
-            invalidate();
+        }
+
+        if (updateDepth > 0) {
+            pendingChanges |= PENDING_ADJUST_WEEK;
+        } else {
+            adjustToSelectedWeek();
+        }
+
+    }
+
+    private void adjustToSelectedWeek() {
+        if (selectedDay != NO_DAY) {
+            int week = getWeekForDay(selectedDay);
+            if (week != selectedWeek) {
+                adjustToNearestWeekX(week);
+            }
+        }
+    }
+
+    private void notifyDateSelected() {
+
+        // post to the UI Thread to avoid potential interference with the OpenGL Thread
+        if (onDateSelected != null && selectedDay != NO_DAY) {
+            postNotification(PENDING_DATE_SELECTED, dateSelectedNotification);
+        }
+
+    }
+
+    /**
+     * Starts batch update. Until matching {@link #endUpdate()} state changes are only collected
+     * and then applied in one pass: with at most one style update, one week adjustment, one
+     * notification per listener and one invalidation. Updates can be nested.
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * Ends batch update started by {@link #beginUpdate()} and applies collected changes once the
+     * outermost update ends.
+     */
+    public void endUpdate() {
+
+        if (updateDepth == 0) {
+            throw new IllegalStateException("endUpdate() called without beginUpdate()");
+        }
+
+        if (--updateDepth > 0) {
+            return;
+        }
+
+        int changes = pendingChanges;
+        pendingChanges = 0;
+
+        if ((changes & PENDING_STYLE) != 0) {
+            drawer.updateStyle();
+        }
+
+        if ((changes & PENDING_ADJUST_WEEK) != 0) {
+            adjustToSelectedWeek();
+        }
+
+        if ((changes & PENDING_ACCESSIBILITY) != 0) {
+            touchHelper.invalidateRoot();
+        }
+
+        if ((changes & PENDING_DATE_SELECTED) != 0) {
+            notifyDateSelected();
+        }
+
+        if ((changes & PENDING_RANGE_SELECTED) != 0 && rangeEnd != NO_DAY) {
+            notifyRangeSelected();
+        }
+
+        if ((changes & PENDING_INVALIDATE) != 0) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Invalidates drawn days, or postpones invalidation until batch update ends.
+     */
+    private void invalidateDays() {
+        if (updateDepth > 0) {
+            pendingChanges |= PENDING_INVALIDATE;
+        } else {
+            invalidate();
+        }
+    }
+
+    /**
+     * Rebuilds style after a change of its inputs, or postpones it until batch update ends.
+     */
+    private void invalidateStyle() {
+        if (updateDepth > 0) {
+            pendingChanges |= PENDING_STYLE | PENDING_INVALIDATE;
+        } else {
+            drawer.updateStyle();
+            invalidate();
+        }
+    }
+
+    private void invalidateAccessibility() {
+        if (updateDepth > 0) {
+            pendingChanges |= PENDING_ACCESSIBILITY;
+        } else {
+            touchHelper.invalidateRoot();
+        }
+    }
+
+    /**
+     * Handles tap in range mode. Listener is only notified once range is complete.
+     */
+    private void selectRangeDay(int day) {
+
+        int epochDay = firstDayEpoch + day;
+
+        if (rangeStart == NO_DAY || rangeEnd != NO_DAY) {
+            rangeStart = epochDay;
+            rangeEnd = NO_DAY;
+        } else {
+            if (epochDay < rangeStart) {
+                rangeEnd = rangeStart;
+                rangeStart = epochDay;
+            } else {
+                rangeEnd = epochDay;
+            }
+
+            notifyRangeSelected();
+        }
+
+        invalidateAccessibility();
+        invalidateDays();
+    }
+
+    /**
+     * Selects range of days. Only used in {@link #SELECTION_MODE_RANGE}.
+     */
+    public void selectRange(@NonNull LocalDate start, @NonNull LocalDate end) {
+
+        int startEpoch = (int) start.toEpochDay();
+        int endEpoch = (int) end.toEpochDay();
+
+        rangeStart = Math.min(startEpoch, endEpoch);
+        rangeEnd = Math.max(startEpoch, endEpoch);
+
+        notifyRangeSelected();
+        invalidateAccessibility();
+        invalidateDays();
+    }
+
+    /**
+     * Returns first day of selected range or {@code null} if nothing is selected.
+     */
+    @Nullable public LocalDate getRangeStart() {
+        return rangeStart == NO_DAY ? null : LocalDate.ofEpochDay(rangeStart);
+    }
+
+    /**
+     * Returns last day of selected range or {@code null} if range is not complete.
+     */
+    @Nullable public LocalDate getRangeEnd() {
+        return rangeEnd == NO_DAY ? null : LocalDate.ofEpochDay(rangeEnd);
+    }
+
+    public int getSelectionMode() {
+        return selectionMode;
+    }
+
+    /**
+     * @param selectionMode {@link #SELECTION_MODE_SINGLE} or {@link #SELECTION_MODE_RANGE}
+     */
+    public void setSelectionMode(int selectionMode) {
+        if (this.selectionMode != selectionMode) {
+            this.selectionMode = selectionMode;
+            rangeStart = NO_DAY;
+            rangeEnd = NO_DAY;
+
+            invalidateAccessibility();
+            invalidateDays();
+        }
+    }
+
+    public void setRangeColor(int color) {
+        if (drawer.rangePaint.getColor() != color) {
+            drawer.rangePaint.setColor(color);
+            invalidateDays();
+        }
+    }
+
+    private void notifyRangeSelected() {
+
+        if (updateDepth > 0) {
+            pendingChanges |= PENDING_RANGE_SELECTED;
+            return;
+        }
+
+        // post to the UI Thread to avoid potential interference with the OpenGL Thread
+        if (onRangeSelected != null) {
+            postNotification(PENDING_RANGE_SELECTED, rangeSelectedNotification);
+        }
+
+    }
+
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+
+        if (!isEnabled()) {
+            return super.onKeyDown(keyCode, event);
+        }
+
+        int direction = drawer.isRtl() ? -1 : 1;
+
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_DPAD_CENTER:
+            case KeyEvent.KEYCODE_ENTER:
+                if (focusedDay != NO_DAY && isItemEnabled(focusedDay)) {
+                    if (selectionMode == SELECTION_MODE_RANGE) {
+                        selectRangeDay(focusedDay);
+                    } else {
+                        selectDay(focusedDay);
+                    }
+                }
+                return true;
+            case KeyEvent.KEYCODE_DPAD_LEFT:
+                return moveFocus(-direction * getKeyRepeatStep(event, 7), event)
+                        || super.onKeyDown(keyCode, event);
+            case KeyEvent.KEYCODE_DPAD_RIGHT:
+                return moveFocus(direction * getKeyRepeatStep(event, 7), event)
+                        || super.onKeyDown(keyCode, event);
+            case KeyEvent.KEYCODE_DPAD_UP:
+                // strip has a single row, so focus leaves the picker
+                return expandOffset > 0 && moveFocus(-7, event) || super.onKeyDown(keyCode, event);
+            case KeyEvent.KEYCODE_DPAD_DOWN:
+                return expandOffset > 0 && moveFocus(7, event) || super.onKeyDown(keyCode, event);
+            case KeyEvent.KEYCODE_PAGE_UP:
+                moveFocus(-7 * getKeyRepeatStep(event, 4), event);
+                return true;
+            case KeyEvent.KEYCODE_PAGE_DOWN:
+                moveFocus(7 * getKeyRepeatStep(event, 4), event);
+                return true;
+            default:
+                return super.onKeyDown(keyCode, event);
+        }
+
+    }
+
+    /**
+     * Focus moves by one step for a single press and by more steps the longer a key is held.
+     */
+    private static int getKeyRepeatStep(KeyEvent event, int maxStep) {
+        return Math.min(1 + event.getRepeatCount() / KEY_REPEAT_ACCELERATION, maxStep);
+    }
+
+    /**
+     * Moves focused day by passed number of days, but not past limits or month grid. Repeated keys
+     * don't queue scrolls, every move just retargets the single adjust scroll to week of focused
+     * day.
+     *
+     * @return {@code true} if focus moved
+     */
+    private boolean moveFocus(int days, KeyEvent event) {
+
+        int day = focusedDay == NO_DAY ? getDefaultFocusedDay() : focusedDay;
+        int target = day + days;
+
+        if (fromDate != null) {
+            target = Math.max(target, getDayForDate(fromDate));
+        }
+        if (toDate != null) {
+            target = Math.min(target, getDayForDate(toDate));
+        }
+        if (expandOffset > 0) {
+            target = Math.min(Math.max(target, gridFirstWeek * 7), (gridFirstWeek + gridRows) * 7 - 1);
+        }
+
+        if (target == focusedDay) {
+            return false;
+        }
+
+        setFocusedDay(target);
+
+        int week = getWeekForDay(target);
+        if (expandOffset == 0 && week != selectedWeek) {
+            if (flingScrollerX != null) {
+                flingScrollerX.forceFinished(true);
+            }
+            adjustToNearestWeekX(week, event.getRepeatCount() > 0
+                    ? KEY_REPEAT_ADJUSTMENT_DURATION_MILLIS : SELECTOR_ADJUSTMENT_DURATION_MILLIS);
+        }
+
+        return true;
+    }
+
+    /**
+     * Focus starts at selected day when it is visible, otherwise at first day of visible week.
+     */
+    private int getDefaultFocusedDay() {
+        if (selectedDay != NO_DAY && getWeekForDay(selectedDay) == selectedWeek) {
+            return selectedDay;
+        } else {
+            return selectedWeek * 7;
+        }
+    }
+
+    /**
+     * Moves focus and repaints only the two affected cells.
+     */
+    private void setFocusedDay(int day) {
+
+        int previousDay = focusedDay;
+        focusedDay = day;
+
+        invalidateDay(previousDay);
+        invalidateDay(day);
+
+        touchHelper.sendEventForVirtualView(toVirtualViewId(day), AccessibilityEvent.TYPE_VIEW_FOCUSED);
+    }
+
+    private void invalidateDay(int item) {
+        if (item != NO_DAY && getDayBounds(item, dirtyRect)) {
+            invalidate(dirtyRect);
+        }
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+
+        if (gainFocus && focusedDay == NO_DAY) {
+            focusedDay = getDefaultFocusedDay();
+        }
+
+        invalidateDay(focusedDay);
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+
+        if (touchHelper.dispatchHoverEvent(event)) {
+            return true;
+        }
+
+        return super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public void computeScroll() {
+        if (suspended) {
+            return;
+        }
+
+        computeScrollX();
+        computeExpand();
+    }
+
+    @Override
+    public void getFocusedRect(Rect r) {
+        int day = focusedDay != NO_DAY ? focusedDay : selectedDay;
+        if (day == NO_DAY || !getDayBounds(day, r)) {
+            super.getFocusedRect(r);
+        }
+    }
+
+    public void setOnWeekChangedListener(OnWeekChanged onWeekChanged) {
+        this.onWeekChanged = onWeekChanged;
+    }
+
+    public void setOnDateSelectedListener(OnDateSelected onDateSelected) {
+        this.onDateSelected = onDateSelected;
+    }
+
+    public void setOnRangeSelectedListener(OnRangeSelected onRangeSelected) {
+        this.onRangeSelected = onRangeSelected;
+    }
+
+    /**
+     * Returns index of visible week. Week 0 is the week of today, or of from date when picker has
+     * limits.
+     */
+    public int getSelectedWeek() {
+        int x = getScrollX();
+        return getWeekPositionFromCoordinates(x) + originWeekOffset;
+    }
+
+    /**
+     * Scrolls to week with passed index, see {@link #getSelectedWeek()}.
+     */
+    public void scrollToWeek(int index) {
+        setSelectedWeek(index - originWeekOffset);
+    }
+
+    private void setSelectedWeek(int week) {
+        selectedWeek = week;
+        scrollToItem(week);
+    }
+
+    /**
+     * Returns number, month and year of week with passed index, same index as used by
+     * {@link #getSelectedWeek()}. When week numbers or month header are shown, info of drawn weeks
+     * and weeks prefetched around them is taken from models they are drawn from. Info of any other
+     * week is computed on every call.
+     */
+    @NonNull public WeekInfo getWeekInfo(int weekIndex) {
+        int weekStartEpoch = firstDayEpoch + (weekIndex - originWeekOffset) * 7;
+
+        WeekRenderModel model = renderFrame.get().get(weekStartEpoch);
+        if (model != null && model.info != null) {
+            return model.info;
+        }
+        return WeekInfo.create(weekStartEpoch, drawer.firstDayOfWeek);
+    }
+
+    /**
+     * Rebinds picker to new week and selection without animations or listener callbacks. Meant for
+     * list adapters that recycle pickers.
+     *
+     * @param week Any day of the week that should be shown
+     * @param selectedDate Day to select or {@code null} to clear selection
+     */
+    public void bind(@NonNull LocalDate week, @Nullable LocalDate selectedDate) {
+
+        if (flingScrollerX != null) {
+            flingScrollerX.forceFinished(true);
+            adjustScrollerX.forceFinished(true);
+        }
+        scrollingX = false;
+        pressedDay = NO_DAY;
+        focusedDay = NO_DAY;
+
+        selectedDay = selectedDate == null ? NO_DAY : getDayForDate(selectedDate);
+        setSelectedWeek(getWeekForDay(getDayForDate(week)));
+
+        // bind never animates, so week adjustment requested earlier in a batch is dropped
+        pendingChanges &= ~PENDING_ADJUST_WEEK;
+
+        rebase();
+
+        invalidateAccessibility();
+        invalidateDays();
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+
+        SavedState ss = (SavedState) state;
+        super.onRestoreInstanceState(ss.getSuperState());
+
+        // state is applied directly to fields, so restore costs a single invalidate
+        selectionMode = ss.mSelectionMode;
+        fromDate = ss.mFromDay == NO_DAY ? null : LocalDate.ofEpochDay(ss.mFromDay);
+        toDate = ss.mToDay == NO_DAY ? null : LocalDate.ofEpochDay(ss.mToDay);
+        setFirstDay(getFirstDay(0));
+        originWeekOffset = 0;
+        updateScrollBounds();
+
+        selectedDay = ss.mSelectedDay == NO_DAY ? NO_DAY : ss.mSelectedDay - firstDayEpoch;
+        focusedDay = NO_DAY;
+        rangeStart = ss.mRangeStart;
+        rangeEnd = ss.mRangeEnd;
+
+        indicatorDays = ss.mIndicatorDays;
+        indicatorCount = indicatorDays.length;
+        indicatorSnapshot = indicatorDays;
+        indicatorGeneration++; // pending submissions were diffed against replaced indicators
+        indicatorEdits = null;
+
+        setSelectedWeek(getWeekForDay(ss.mWeekDay - firstDayEpoch));
+
+        invalidate();
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        Parcelable superState = super.onSaveInstanceState();
+
+        SavedState savedState = new SavedState(superState);
+        savedState.mSelectionMode = selectionMode;
+        savedState.mWeekDay = firstDayEpoch + selectedWeek * 7;
+        savedState.mSelectedDay = selectedDay == NO_DAY ? NO_DAY : firstDayEpoch + selectedDay;
+        savedState.mFromDay = fromDate == null ? NO_DAY : (int) fromDate.toEpochDay();
+        savedState.mToDay = toDate == null ? NO_DAY : (int) toDate.toEpochDay();
+        savedState.mRangeStart = rangeStart;
+        savedState.mRangeEnd = rangeEnd;
+
+        savedState.mIndicatorDays = getIndicatorSnapshot();
+
+        return savedState;
+
+    }
+
+    /**
+     * Returns day drawn at passed view coordinates or {@code null} if there is none, e.g. on
+     * divider between weeks. Lookup is a binary search over precomputed column edges so it is cheap
+     * enough to be called for every move event.
+     */
+    @Nullable public LocalDate dayAt(float x, float y) {
+
+        if (y < 0 || y >= getHeight()) {
+            return null;
+        }
+
+        int day = getDayIndexAt(x, y);
+        if (day == NO_DAY) {
+            return null;
+        }
+
+        return getDate(day);
+    }
+
+    /**
+     * Sets day number colors. Colors are resolved for every day state right away.
+     */
+    public void setTextColor(@NonNull ColorStateList color) {
+        drawer.setDayTextColor(color);
+        invalidateDays();
+    }
+
+    /**
+     * Sets day label colors. Colors are resolved for every day state right away.
+     */
+    public void setLabelTextColor(@NonNull ColorStateList color) {
+        drawer.setDayLabelTextColor(color);
+        invalidateDays();
+    }
+
+    public TextUtils.TruncateAt getEllipsize() {
+        return drawer.ellipsize;
+    }
+
+    public void setEllipsize(TextUtils.TruncateAt ellipsize) {
+        if (drawer.ellipsize != ellipsize) {
+            drawer.ellipsize = ellipsize;
+
+            invalidateStyle();
+        }
+    }
+
+    /**
+     * Adds decorator drawn on top of every day. See {@link DayDecorator} for its contract.
+     */
+    public void addDayDecorator(@NonNull DayDecorator decorator) {
+        drawer.addDecorator(decorator);
+        invalidateDays();
+    }
+
+    public void removeDayDecorator(@NonNull DayDecorator decorator) {
+        if (drawer.removeDecorator(decorator)) {
+            invalidateDays();
+        }
+    }
+
+    public void setDateIndicator(@NonNull LocalDate date, boolean enabled) {
+        int epochDay = (int) date.toEpochDay();
+
+        if (indicatorEdits != null) {
+            indicatorEdits.put(epochDay, enabled);
+        }
+
+        if (setIndicator(epochDay, enabled)) {
+            invalidateDays();
+        }
+    }
+
+    /**
+     * Replaces all indicators with passed days. New days are diffed against current indicators in
+     * background and only the difference is applied on main thread, where only changed visible days
+     * are redrawn. Submitting unchanged days does not redraw anything.
+     *
+     * Passed set must not be modified after it is submitted. When several sets are submitted in
+     * a row, only the last one is applied. Indicators changed with
+     * {@link #setDateIndicator(LocalDate, boolean)} after the last submission are kept on top of
+     * submitted days.
+     */
+    public void submitIndicators(@NonNull final Set<LocalDate> dates) {
+
+        final int generation = ++indicatorGeneration;
+        final int[] base = getIndicatorSnapshot();
+
+        // edits made before this submission are replaced by it
+        indicatorEdits = new SparseBooleanArray(0);
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                final int[] days = toSortedEpochDays(dates);
+                final int[] added = difference(days, base);
+                final int[] removed = difference(base, days);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == indicatorGeneration) {
+                            applyIndicators(base, days, added, removed);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyIndicators(int[] base, int[] days, int[] added, int[] removed) {
+
+        SparseBooleanArray edits = indicatorEdits;
+        indicatorEdits = null;
+
+        int[] current = getIndicatorSnapshot();
+
+        // submitted days become the buffer, edits are replayed on top of them
+        indicatorDays = days;
+        indicatorCount = days.length;
+        indicatorSnapshot = days;
+
+        for (int i = 0; i < edits.size(); i++) {
+            setIndicator(edits.keyAt(i), edits.valueAt(i));
+        }
+
+        // difference computed in background is only valid for unedited days it was diffed against
+        if (edits.size() > 0 || current != base) {
+            int[] applied = getIndicatorSnapshot();
+            added = difference(applied, current);
+            removed = difference(current, applied);
+        }
+
+        if (added.length == 0 && removed.length == 0) {
+            // same days, snapshots taken from current indicators stay valid
+            indicatorSnapshot = current;
+            return;
+        }
+
+        for (int day : removed) {
+            invalidateDay(day - firstDayEpoch);
+        }
+        for (int day : added) {
+            invalidateDay(day - firstDayEpoch);
+        }
+    }
+
+    /**
+     * Returns indicator days as sorted epoch days. Returned array must not be modified. Used by
+     * tests.
+     */
+    @NonNull int[] getIndicatorDays() {
+        return getIndicatorSnapshot();
+    }
+
+    /**
+     * Returns number of used indicator days. Used by tests.
+     */
+    int getIndicatorCount() {
+        return indicatorCount;
+    }
+
+    /**
+     * Returns capacity of indicator buffer. Used by tests.
+     */
+    int getIndicatorCapacity() {
+        return indicatorDays.length;
+    }
+
+    /**
+     * Returns number of days changed one by one while a submission is diffed. Used by tests.
+     */
+    int getIndicatorEditCount() {
+        return indicatorEdits == null ? 0 : indicatorEdits.size();
+    }
+
+    /**
+     * Returns number of listener notifications posted and not delivered yet. Used by tests.
+     */
+    int getPendingNotificationCount() {
+        return Integer.bitCount(postedNotifications);
+    }
+
+    /**
+     * Returns number of midnight ticks posted and not run or removed yet. Used by tests.
+     */
+    int getPendingMidnightTickCount() {
+        return pendingMidnightTicks;
+    }
+
+    /**
+     * Returns {@code true} once style deferred by constructor is obtained. Used by tests.
+     */
+    boolean hasStyle() {
+        return drawer.hasStyle();
+    }
+
+    /**
+     * Returns {@code true} once drawables deferred by constructor are loaded. Used by tests.
+     */
+    boolean areDrawablesLoaded() {
+        return drawer.areDrawablesLoaded();
+    }
+
+    /**
+     * Returns {@code true} once scrollers deferred by constructor are created. Used by tests.
+     */
+    boolean hasScrollers() {
+        return flingScrollerX != null;
+    }
+
+    /**
+     * Returns selected day or {@code null} if none is selected. Used by tests.
+     */
+    @Nullable LocalDate getSelectedDate() {
+        return selectedDay == NO_DAY ? null : getDate(selectedDay);
+    }
+
+    /**
+     * Returns {@code true} while submitted indicators are not applied yet. Used by tests.
+     */
+    boolean isSubmittingIndicators() {
+        return indicatorEdits != null;
+    }
+
+    /**
+     * Sets or clears indicator of passed epoch day in place. Buffer is only copied when it has to
+     * grow or when it is shared with {@link #indicatorSnapshot}.
+     *
+     * @return {@code true} if indicator changed
+     */
+    private boolean setIndicator(int epochDay, boolean enabled) {
 
+        int index = Arrays.binarySearch(indicatorDays, 0, indicatorCount, epochDay);
+        if (enabled == index >= 0) {
+            return false;
         }
 
-        int week = selectedDay / 7;
-        if (selectedDay < 0 && selectedDay % 7 != 0) {
-            week -= 1;
+        boolean full = enabled && indicatorCount == indicatorDays.length;
+        if (full || indicatorDays == indicatorSnapshot) {
+            indicatorDays = Arrays.copyOf(indicatorDays, full
+                    ? Math.max(indicatorCount * 2, MIN_INDICATOR_CAPACITY) : indicatorDays.length);
         }
 
-        if (week != selectedWeek) {
-            adjustToNearestWeekX(week);
+        if (enabled) {
+            index = -index - 1;
+            System.arraycopy(indicatorDays, index, indicatorDays, index + 1, indicatorCount - index);
+            indicatorDays[index] = epochDay;
+            indicatorCount++;
+        } else {
+            System.arraycopy(indicatorDays, index + 1, indicatorDays, index,
+                    indicatorCount - index - 1);
+            indicatorCount--;
         }
 
+        indicatorSnapshot = null;
+        return true;
     }
 
-    @Override
-    public boolean onKeyDown(int keyCode, KeyEvent event) {
-
-        if (!isEnabled()) {
-            return super.onKeyDown(keyCode, event);
+    /**
+     * Returns immutable indicator days, copied from buffer only if indicators changed since the
+     * last call.
+     */
+    @NonNull private int[] getIndicatorSnapshot() {
+        int[] snapshot = indicatorSnapshot;
+        if (snapshot == null) {
+            snapshot = indicatorCount == indicatorDays.length
+                    ? indicatorDays : Arrays.copyOf(indicatorDays, indicatorCount);
+            indicatorSnapshot = snapshot;
         }
+        return snapshot;
+    }
 
-        switch (keyCode) {
-            case KeyEvent.KEYCODE_DPAD_CENTER:
-            case KeyEvent.KEYCODE_ENTER:
-//                selectDay();
-                return true;
-            case KeyEvent.KEYCODE_DPAD_LEFT:
-                smoothScrollBy(-1);
-                return true;
-            case KeyEvent.KEYCODE_DPAD_RIGHT:
-                smoothScrollBy(1);
-                return true;
-            default:
-                return super.onKeyDown(keyCode, event);
+    private static int[] toSortedEpochDays(Set<LocalDate> dates) {
+
+        int[] days = new int[dates.size()];
+        int index = 0;
+        for (LocalDate date : dates) {
+            days[index++] = (int) date.toEpochDay();
         }
 
+        Arrays.sort(days);
+        return days;
     }
 
-//    @Override
-//    protected boolean dispatchHoverEvent(MotionEvent event) {
-//
-//        if (mTouchHelper.dispatchHoverEvent(event)) {
-//            return true;
-//        }
-//
-//        return super.dispatchHoverEvent(event);
-//    }
-
-    @Override
-    public void computeScroll() {
-        computeScrollX();
-    }
+    /**
+     * Returns days of sorted array {@code a} that are not in sorted array {@code b}.
+     */
+    private static int[] difference(int[] a, int[] b) {
 
-    @Override
-    public void getFocusedRect(Rect r) {
-        super.getFocusedRect(r); // TODO this should only be current item
-    }
+        int[] result = new int[a.length];
+        int count = 0;
 
-    public void setOnWeekChangedListener(OnWeekChanged onWeekChanged) {
-        this.onWeekChanged = onWeekChanged;
-    }
+        int j = 0;
+        for (int day : a) {
+            while (j < b.length && b[j] < day) {
+                j++;
+            }
+            if (j == b.length || b[j] != day) {
+                result[count++] = day;
+            }
+        }
 
-    public void setOnDateSelectedListener(OnDateSelected onDateSelected) {
-        this.onDateSelected = onDateSelected;
+        return count == result.length ? result : Arrays.copyOf(result, count);
     }
 
-    public int getSelectedWeek() {
-        int x = getScrollX();
-        return getWeekPositionFromCoordinates(x);
+    private int getDayForDate(@NonNull LocalDate date) {
+        return (int) ChronoUnit.DAYS.between(firstDay, date);
     }
 
-    public void scrollToWeek(int index) {
-        selectedWeek = index;
-        scrollToItem(index);
+    private static int getWeekForDay(int day) {
+        int week = day / 7;
+        if (day < 0 && day % 7 != 0) {
+            week -= 1;
+        }
+        return week;
     }
 
     @Override
-    protected void onRestoreInstanceState(Parcelable state) {
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
 
-        if (!(state instanceof SavedState)) {
-            super.onRestoreInstanceState(state);
-            return;
+        if (drawer.setViewEnabled(isEnabled())) {
+            invalidateDays();
         }
+    }
 
-        SavedState ss = (SavedState) state;
-        super.onRestoreInstanceState(ss.getSuperState());
-
-        scrollToWeek(ss.mSelItem);
+    /**
+     * Returns index of day drawn at passed view coordinates or {@link #NO_DAY} when coordinates
+     * fall on a divider or outside of grid rows.
+     */
+    private int getDayIndexAt(float x, float y) {
 
+        if (dayWidth == 0) {
+            return NO_DAY;
+        }
 
-    }
+        if (expandOffset > 0) {
+            return getGridDayIndexAt((int) x, (int) y);
+        }
 
-    @Override
-    protected Parcelable onSaveInstanceState() {
-        Parcelable superState = super.onSaveInstanceState();
+        int contentX = getScrollX() + (int) x;
+        int week = floorDiv(contentX, weekPitch);
+        int offset = contentX - week * weekPitch;
 
-        SavedState savedState = new SavedState(superState);
-        savedState.mSelItem = selectedWeek;
+        int column = Arrays.binarySearch(drawer.columnEdges, offset);
+        if (column < 0) {
+            column = -column - 2; // column whose left edge is before offset
+        }
 
-        return savedState;
+        if (column < 0 || column >= 7) {
+            return NO_DAY;
+        }
 
+        return week * 7 + (drawer.isRtl() ? 6 - column : column);
     }
 
-    public TextUtils.TruncateAt getEllipsize() {
-        return ellipsize;
-    }
+    private int getGridDayIndexAt(int x, int y) {
 
-    public void setEllipsize(TextUtils.TruncateAt ellipsize) {
-        if (this.ellipsize != ellipsize) {
-            this.ellipsize = ellipsize;
+        if (x < 0 || y < getPaddingTop() + (int) drawer.getLabelsHeight()) {
+            return NO_DAY;
+        }
 
-            remakeLayout();
-            invalidate();
+        int row = floorDiv(y - getGridTop(), drawer.getRowHeight());
+        if (row < 0 || row >= gridRows) {
+            return NO_DAY;
         }
-    }
 
-    public void setDateIndicator(@NonNull LocalDate date, boolean enabled) {
-        int itemIndex = getDayForDate(date);
-        if (enabled) {
-            dayIndicators.put(itemIndex, true);
-        } else {
-            dayIndicators.delete(itemIndex);
+        int column = Arrays.binarySearch(drawer.columnEdges, x);
+        if (column < 0) {
+            column = -column - 2;
         }
-    }
 
-    private int getDayForDate(@NonNull LocalDate date) {
-        return firstDay.until(date).getDays();
-    }
+        if (column < 0 || column >= 7) {
+            return NO_DAY;
+        }
 
-    @Override
-    protected void drawableStateChanged() {
-        super.drawableStateChanged(); //TODO
+        return (gridFirstWeek + row) * 7 + (drawer.isRtl() ? 6 - column : column);
     }
 
-    @Override protected void onScrollChanged(int l, int t, int oldl, int oldt) {
-        super.onScrollChanged(l, t, oldl, oldt);
+    /**
+     * Calculates bounds of specified item in view coordinates.
+     *
+     * @return {@code true} if item is at least partially visible
+     */
+    private boolean getDayBounds(int item, Rect bounds) {
+
+        int week = getWeekForDay(item);
+        int dayOfWeek = item - week * 7;
+        int column = drawer.isRtl() ? 6 - dayOfWeek : dayOfWeek;
 
-        if (getWeekPositionFromCoordinates(l) != getWeekPositionFromCoordinates(oldl)) {
-            remakeLayout();
-        }
-    }
+        if (expandOffset > 0) {
+            int row = week - gridFirstWeek;
+            int top = getGridTop() + row * drawer.getRowHeight();
+            int left = drawer.columnEdges[column];
+            bounds.set(left, top, left + dayWidth, top + drawer.getRowHeight());
 
-    private int getDayPositionFromTouch(float x) {
-        int weekPositionFromTouch = getWeekPositionFromTouch(x);
-        int position = weekPositionFromTouch * 7 + getRelativeDayPositionFromTouch(x);
-        if (weekPositionFromTouch < 0) {
-            position += 6;
+            return row >= 0 && row < gridRows
+                    && bounds.bottom > getPaddingTop() + (int) drawer.getLabelsHeight()
+                    && bounds.top < getHeight();
         }
-        return position;
+
+        int left = week * weekPitch - getScrollX() + drawer.columnEdges[column];
+        bounds.set(left, 0, left + dayWidth, getHeight());
+
+        return dayWidth > 0 && bounds.right > 0 && bounds.left < getWidth();
     }
 
-    private int getRelativeDayPositionFromTouch(float x) {
-        return getRelativeDayPositionFromCoordinates((int) (getScrollX() + x));
+    private int toVirtualViewId(int item) {
+        return firstDayEpoch + item + VIRTUAL_VIEW_ID_OFFSET;
     }
 
-    private int getWeekPositionFromTouch(float x) {
-        return getWeekPositionFromCoordinates((int) (getScrollX() - (weekWidth + dividerSize) * .5f + x));
+    private int toItem(int virtualViewId) {
+        return virtualViewId - VIRTUAL_VIEW_ID_OFFSET - firstDayEpoch;
     }
 
-    /**
-     * Returns day of the week for passed coordinates.
-     */
-    private int getRelativeDayPositionFromCoordinates(int x) {
-        float relativePosition = x % (weekWidth + dividerSize);
-        return (int) (relativePosition / dayWidth);
+    private static int floorDiv(int x, int y) {
+        int result = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            result--;
+        }
+        return result;
     }
 
     private void computeScrollX() {
         OverScroller scroller = flingScrollerX;
+        if (scroller == null) {
+            return;
+        }
+
         if(scroller.isFinished()) {
             scroller = adjustScrollerX;
             if(scroller.isFinished()) {
@@ -874,9 +2334,19 @@ public class WeekDatePicker extends View {
                 previousScrollerX = scroller.getStartX();
             }
 
+            int targetX = getScrollX() + currentScrollerX - previousScrollerX;
             scrollBy(currentScrollerX - previousScrollerX, 0);
             previousScrollerX = currentScrollerX;
 
+            // scroller ran into a limit
+            if (getScrollX() != targetX && !scroller.isFinished()) {
+                if (leftEdge != null && getOverScrollMode() != OVER_SCROLL_NEVER) {
+                    EdgeEffect edge = targetX < getScrollX() ? leftEdge : rightEdge;
+                    edge.onAbsorb(Math.max((int) scroller.getCurrVelocity(), minimumFlingVelocity));
+                }
+                scroller.abortAnimation();
+            }
+
             if(scroller.isFinished()) {
                 onScrollerFinishedX(scroller);
             }
@@ -890,25 +2360,25 @@ public class WeekDatePicker extends View {
         int signum= Integer.signum(velocityX);
 
         int currentWeekPosition = getWeekPositionFromCoordinates(scrollPositionStart);
-        float weekWidth = this.weekWidth + dividerSize;
 
         int finalPosition;
         switch (signum) {
             case -1:
-                finalPosition = (int) weekWidth * (currentWeekPosition + 1);
+                finalPosition = weekPitch * (currentWeekPosition + 1);
                 break;
             default:
             case 0:
-                finalPosition = (int) weekWidth * (currentWeekPosition);
+                finalPosition = weekPitch * (currentWeekPosition);
                 break;
             case 1:
-                finalPosition = (int) weekWidth * (currentWeekPosition - 1);
+                finalPosition = weekPitch * (currentWeekPosition - 1);
                 break;
         }
 
         int dx = finalPosition - getScrollX();
 
         previousScrollerX = Integer.MIN_VALUE;
+        ensureScrollers();
         flingScrollerX.startScroll(getScrollX(), getScrollY(), dx, 0);
 
         invalidate();
@@ -916,13 +2386,16 @@ public class WeekDatePicker extends View {
 
     private void adjustToNearestWeekX() {
 
-        int x = getScrollX();
-        int week = Math.round(x / (weekWidth + dividerSize * 1f));
+        int week = getWeekPositionFromCoordinates(getScrollX());
         adjustToNearestWeekX(week);
 
     }
 
     private void adjustToNearestWeekX(int week) {
+        adjustToNearestWeekX(week, SELECTOR_ADJUSTMENT_DURATION_MILLIS);
+    }
+
+    private void adjustToNearestWeekX(int week, int duration) {
 
         int x = getScrollX();
 
@@ -931,12 +2404,13 @@ public class WeekDatePicker extends View {
             notifyWeekChange();
         }
 
-        int weekPosition = (weekWidth + (int) dividerSize) * week;
+        int weekPosition = weekPitch * week;
 
         int deltaX = weekPosition - x;
 
         previousScrollerX = Integer.MIN_VALUE;
-        adjustScrollerX.startScroll(x, 0, deltaX, 0, SELECTOR_ADJUSTMENT_DURATION_MILLIS);
+        ensureScrollers();
+        adjustScrollerX.startScroll(x, 0, deltaX, 0, duration);
         invalidate();
     }
 
@@ -945,54 +2419,47 @@ public class WeekDatePicker extends View {
         int items = 1;
         int totalPadding = ((int) dividerSize * (items - 1));
         weekWidth = (w - totalPadding) / items;
-        dayWidth = weekWidth / 7;
+        weekPitch = weekWidth + (int) dividerSize;
 
+        updateScrollBounds();
         scrollToItem(selectedWeek);
 
-        buildFontMetrics();
-        buildLabelFontMetrics();
-        remakeLayout();
-
-    }
-
-    private void calculateBackgroundRect() {
+        // layouts and rects only depend on day width, so they survive height only changes
+        int dayWidth = weekWidth / drawer.getColumnCount();
+        if (dayWidth != this.dayWidth) {
+            this.dayWidth = dayWidth;
 
-        if (dayDrawable != null) {
-            float circleRadius = dayWidth / 3;
-            int centerX = layouts[0].getWidth() / 2;
-            int centerY = layouts[0].getHeight() / 2;
+            drawer.setDayWidth(dayWidth);
 
-            backgroundRect = new Rect((int) (centerX - circleRadius), (int) (centerY - circleRadius),
-                    (int) (centerX + circleRadius), (int) (centerY + circleRadius));
-        } else {
-            backgroundRect = null;
+            // row height depends on day width
+            if (expanded) {
+                updateGrid();
+                setExpandOffset(expandRange);
+            }
         }
 
     }
 
-    private void calculateIndicatorRect() {
-
-        if (indicatorDrawable != null) {
-
-            float circleRadius = dayWidth / 3;
-            int centerX = layouts[0].getWidth() / 2;
-            int centerY = layouts[0].getHeight() / 2;
-
-            int indicatorDotWidth = indicatorDrawable.getIntrinsicWidth();
-            int indicatorDotHeight = indicatorDrawable.getIntrinsicHeight();
-            indicatorRect = new Rect(centerX - indicatorDotWidth / 2,
-                    (int) (centerY + circleRadius - indicatorDotHeight),
-                    centerX + indicatorDotWidth / 2, (int) (centerY + circleRadius));
-
-        } else {
-            indicatorRect = null;
+    /**
+     * Scrollers are only needed once user interacts with the picker, so they are created on first
+     * use instead of for every inflated picker.
+     */
+    private void ensureScrollers() {
+        if (flingScrollerX == null) {
+            Context context = getContext();
+            flingScrollerX = new OverScroller(context);
+            adjustScrollerX = new OverScroller(context, new DecelerateInterpolator(2.5f));
+            expandScroller = new OverScroller(context, new DecelerateInterpolator());
         }
-
     }
 
     private void onScrollerFinishedX(OverScroller scroller) {
         if(scroller == flingScrollerX) {
             finishScrolling();
+        } else {
+            // visible days only change once scrolling settles, so nodes are refreshed only then
+            touchHelper.invalidateRoot();
+            rebase();
         }
     }
 
@@ -1002,49 +2469,16 @@ public class WeekDatePicker extends View {
         scrollingX = false;
     }
 
-    private int getPositionOnScreen(float x) {
-        return (int) (x / (weekWidth + dividerSize));
-    }
-
-    private void smoothScrollBy(int i) {
-        int deltaMoveX = (weekWidth + (int) dividerSize) * i;
-
-        previousScrollerX = Integer.MIN_VALUE;
-        flingScrollerX.startScroll(getScrollX(), 0, deltaMoveX, 0);
-        invalidate();
-    }
-
-    /**
-     * Sets text size for items
-     * @param size New item text size in px.
-     */
-    private void setTextSize(float size) {
-        if(size != dayTextPaint.getTextSize()) {
-            dayTextPaint.setTextSize(size);
-
-            buildFontMetrics();
-            requestLayout();
-            invalidate();
-        }
-    }
-
-    private void setLabelTextSize(float size) {
-        if (size != dayLabelTextPain.getTextSize()) {
-            dayLabelTextPain.setTextSize(size);
-
-            buildLabelFontMetrics();
-            remakeLayout();
-            invalidate();
-        }
-    }
-
     /**
      * Calculates item from x coordinate position.
      * @param x Scroll position to calculate.
      * @return Selected item from scrolling position in {param x}
      */
     private int getWeekPositionFromCoordinates(int x) {
-        return Math.round(x / (weekWidth + dividerSize));
+        if (weekPitch == 0) {
+            return 0;
+        }
+        return floorDiv(x + weekPitch / 2, weekPitch);
     }
 
     /**
@@ -1052,36 +2486,18 @@ public class WeekDatePicker extends View {
      * @param index Index of an item to scroll to
      */
     private void scrollToItem(int index) {
-        scrollTo((weekWidth + (int) dividerSize) * index, 0);
+        scrollTo(weekPitch * index, 0);
     }
 
     private void notifyWeekChange() {
 
         // post to the UI Thread to avoid potential interference with the OpenGL Thread
         if (onWeekChanged != null) {
-            post(new Runnable() {
-                @Override
-                public void run() {
-                    LocalDate firstDay = getFirstDay(getWeekPositionFromCoordinates(getScrollX()));
-                    onWeekChanged.onItemSelected(firstDay);
-                }
-            });
+            postNotification(PENDING_WEEK_CHANGED, weekChangedNotification);
         }
 
     }
 
-    private void buildFontMetrics() {
-        FontMetricsInt fontMetricsInt = dayTextPaint.getFontMetricsInt();
-        dayMetrics = WeekDatePicker.toBoringFontMetrics(fontMetricsInt, dayMetrics);
-        dayMetrics.width = weekWidth;
-    }
-
-    private void buildLabelFontMetrics() {
-        FontMetricsInt fontMetricsInt = dayLabelTextPain.getFontMetricsInt();
-        dayLabelMetrics = WeekDatePicker.toBoringFontMetrics(fontMetricsInt, dayLabelMetrics);
-        dayLabelMetrics.width = weekWidth;
-    }
-
     public interface OnWeekChanged {
 
         void onItemSelected(LocalDate firstDay);
@@ -1094,24 +2510,169 @@ public class WeekDatePicker extends View {
 
     }
 
-    private static BoringLayout.Metrics toBoringFontMetrics(FontMetricsInt metrics,
-            @Nullable BoringLayout.Metrics fontMetrics) {
+    public interface OnRangeSelected {
+
+        void onRangeSelected(LocalDate start, LocalDate end);
+
+    }
+
+    /**
+     * Exposes every visible day as a virtual view. Day descriptions are formatted once per week and
+     * reused for all following queries.
+     */
+    private class PickerTouchHelper extends ExploreByTouchHelper {
+
+        private static final int MAX_CACHED_WEEKS = 8;
+
+        private final Rect bounds = new Rect();
+
+        private final SparseArray<CharSequence[]> descriptions = new SparseArray<>(); // keyed by week start epoch day
+        @Nullable private DateTimeFormatter formatter;
+
+        PickerTouchHelper(View forView) {
+            super(forView);
+        }
+
+        void onLocaleChanged() {
+            formatter = null;
+            descriptions.clear();
+        }
+
+        /**
+         * Drops cached descriptions, they are formatted again once needed.
+         */
+        void trimMemory() {
+            descriptions.clear();
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+
+            if (y < 0 || y >= getHeight()) {
+                return INVALID_ID;
+            }
+
+            int item = getDayIndexAt(x, y);
+            return item == NO_DAY ? INVALID_ID : toVirtualViewId(item);
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+
+            if (dayWidth == 0) {
+                return;
+            }
+
+            int firstWeek;
+            int lastWeek;
+            if (expandOffset > 0) {
+                firstWeek = gridFirstWeek;
+                lastWeek = gridFirstWeek + gridRows - 1;
+            } else {
+                firstWeek = floorDiv(getScrollX(), weekPitch);
+                lastWeek = floorDiv(getScrollX() + getWidth() - 1, weekPitch);
+            }
+
+            for (int item = firstWeek * 7; item < (lastWeek + 1) * 7; item++) {
+                if (getDayBounds(item, bounds)) {
+                    virtualViewIds.add(toVirtualViewId(item));
+                }
+            }
+        }
+
+        @Override
+        protected void onPopulateEventForVirtualView(int virtualViewId, AccessibilityEvent event) {
+            event.setContentDescription(getDescription(toItem(virtualViewId)));
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId, AccessibilityNodeInfoCompat node) {
+
+            int item = toItem(virtualViewId);
+
+            getDayBounds(item, bounds);
+            node.setBoundsInParent(bounds);
+            node.setContentDescription(getDescription(item));
+
+            boolean enabled = isItemEnabled(item);
+            node.setEnabled(enabled);
+            node.setSelected(isItemSelected(item));
+            node.setClickable(enabled);
+            if (enabled) {
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            }
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action, Bundle arguments) {
+
+            int item = toItem(virtualViewId);
 
-        if (fontMetrics == null) {
-            fontMetrics = new BoringLayout.Metrics();
+            if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && isItemEnabled(item)) {
+
+                if (selectionMode == SELECTION_MODE_RANGE) {
+                    selectRangeDay(item);
+                } else {
+                    selectDay(item);
+                }
+
+                sendEventForVirtualView(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+                return true;
+            }
+
+            return false;
+        }
+
+        private CharSequence getDescription(int item) {
+
+            int week = getWeekForDay(item);
+            int weekStart = firstDayEpoch + week * 7;
+
+            CharSequence[] weekDescriptions = descriptions.get(weekStart);
+            if (weekDescriptions == null) {
+
+                if (descriptions.size() >= MAX_CACHED_WEEKS) {
+                    descriptions.clear();
+                }
+
+                if (formatter == null) {
+                    formatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.FULL)
+                            .withLocale(drawer.locale);
+                }
+
+                weekDescriptions = new CharSequence[7];
+                LocalDate date = LocalDate.ofEpochDay(weekStart);
+                for (int i = 0; i < weekDescriptions.length; i++) {
+                    weekDescriptions[i] = formatter.format(date);
+                    date = date.plusDays(1);
+                }
+
+                descriptions.put(weekStart, weekDescriptions);
+            }
+
+            return weekDescriptions[item - week * 7];
         }
 
-        fontMetrics.ascent = metrics.ascent;
-        fontMetrics.bottom = metrics.bottom;
-        fontMetrics.descent = metrics.descent;
-        fontMetrics.leading = metrics.leading;
-        fontMetrics.top = metrics.top;
-        return fontMetrics;
     }
 
+    /**
+     * Picker state with all days stored as epoch days. Indicators are written either as runs of
+     * consecutive days or as a bitset, whichever is smaller, so years of indicators stay far below
+     * Binder transaction limit.
+     */
     public static class SavedState extends BaseSavedState {
 
-        private int mSelItem;
+        private static final int INDICATORS_RUNS = 0;
+        private static final int INDICATORS_BITSET = 1;
+
+        private int mSelectionMode;
+        private int mWeekDay;
+        private int mSelectedDay = NO_DAY;
+        private int mFromDay = NO_DAY;
+        private int mToDay = NO_DAY;
+        private int mRangeStart = NO_DAY;
+        private int mRangeEnd = NO_DAY;
+        private int[] mIndicatorDays = new int[0]; // sorted
 
         public SavedState(Parcelable superState) {
             super(superState);
@@ -1119,21 +2680,134 @@ public class WeekDatePicker extends View {
 
         private SavedState(Parcel in) {
             super(in);
-            mSelItem = in.readInt();
+            mSelectionMode = in.readInt();
+            mWeekDay = in.readInt();
+            mSelectedDay = in.readInt();
+            mFromDay = in.readInt();
+            mToDay = in.readInt();
+            mRangeStart = in.readInt();
+            mRangeEnd = in.readInt();
+            mIndicatorDays = readIndicators(in);
         }
 
         @Override
         public void writeToParcel(Parcel dest, int flags) {
             super.writeToParcel(dest, flags);
 
-            dest.writeInt(mSelItem);
+            dest.writeInt(mSelectionMode);
+            dest.writeInt(mWeekDay);
+            dest.writeInt(mSelectedDay);
+            dest.writeInt(mFromDay);
+            dest.writeInt(mToDay);
+            dest.writeInt(mRangeStart);
+            dest.writeInt(mRangeEnd);
+            writeIndicators(dest, mIndicatorDays);
+        }
+
+        private static void writeIndicators(Parcel dest, int[] days) {
+
+            int count = days.length;
+
+            int runs = 0;
+            for (int i = 0; i < count; i++) {
+                if (i == 0 || days[i] != days[i - 1] + 1) {
+                    runs++;
+                }
+            }
+
+            int span = count == 0 ? 0 : days[count - 1] - days[0] + 1;
+
+            if (count > 0 && (span + 7) / 8 < runs * 8) {
+
+                byte[] bits = new byte[(span + 7) / 8];
+                int first = days[0];
+                for (int day : days) {
+                    int bit = day - first;
+                    bits[bit >> 3] |= 1 << (bit & 7);
+                }
+
+                dest.writeInt(INDICATORS_BITSET);
+                dest.writeInt(first);
+                dest.writeInt(span);
+                dest.writeByteArray(bits);
+
+            } else {
+
+                dest.writeInt(INDICATORS_RUNS);
+                dest.writeInt(runs);
+
+                int i = 0;
+                while (i < count) {
+                    int start = days[i];
+                    int length = 1;
+                    while (i + length < count && days[i + length] == start + length) {
+                        length++;
+                    }
+
+                    dest.writeInt(start);
+                    dest.writeInt(length);
+                    i += length;
+                }
+
+            }
+        }
+
+        private static int[] readIndicators(Parcel in) {
+
+            int encoding = in.readInt();
+
+            if (encoding == INDICATORS_BITSET) {
+
+                int first = in.readInt();
+                int span = in.readInt();
+                byte[] bits = in.createByteArray();
+
+                int count = 0;
+                for (byte b : bits) {
+                    count += Integer.bitCount(b & 0xFF);
+                }
+
+                int[] days = new int[count];
+                int index = 0;
+                for (int bit = 0; bit < span; bit++) {
+                    if ((bits[bit >> 3] & (1 << (bit & 7))) != 0) {
+                        days[index++] = first + bit;
+                    }
+                }
+                return days;
+
+            } else {
+
+                int runs = in.readInt();
+                int[] starts = new int[runs];
+                int[] lengths = new int[runs];
+
+                int count = 0;
+                for (int i = 0; i < runs; i++) {
+                    starts[i] = in.readInt();
+                    lengths[i] = in.readInt();
+                    count += lengths[i];
+                }
+
+                int[] days = new int[count];
+                int index = 0;
+                for (int i = 0; i < runs; i++) {
+                    for (int j = 0; j < lengths[i]; j++) {
+                        days[index++] = starts[i] + j;
+                    }
+                }
+                return days;
+
+            }
         }
 
         @Override
         public String toString() {
-            return  "HorizontalPicker.SavedState{"
+            return  "WeekDatePicker.SavedState{"
                     + Integer.toHexString(System.identityHashCode(this))
-                    + " selItem=" + mSelItem
+                    + " weekDay=" + mWeekDay
+                    + " selectedDay=" + mSelectedDay
+                    + " indicators=" + mIndicatorDays.length
                     + "}";
         }
 
@@ -0,0 +1,671 @@
+package solar.blaz.date.week;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.FontMetricsInt;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.text.BoringLayout;
+import android.text.TextUtils;
+
+import org.threeten.bp.DayOfWeek;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Draws a single week: day labels, range run, day backgrounds, indicators and day numbers. Shared
+ * by {@link WeekDatePicker} and {@link WeekStripRenderer} so both draw exactly the same thing. Month
+ * grid is drawn as one label row followed by several day rows. Days are drawn from
+ * {@link WeekRenderModel week models}, so drawing does not compute any day state.
+ *
+ * Optional week column is placed before the first day, on the right in RTL. It shows week numbers
+ * next to day rows and short month name next to labels.
+ *
+ * Drawer does not depend on a view. It is not thread safe, but can be used on any thread as long
+ * as it is not shared and was created with an unshared style.
+ */
+final class WeekDrawer {
+
+    static final int STATE_ENABLED = 1;
+    static final int STATE_PRESSED = 1 << 1;
+    static final int STATE_SELECTED = 1 << 2;
+    /**
+     * Day is inside of selected range, but is not its first or last day.
+     */
+    static final int STATE_IN_RANGE = 1 << 3;
+    static final int STATE_INDICATOR = 1 << 4;
+    /**
+     * Day has keyboard focus.
+     */
+    static final int STATE_FOCUSED = 1 << 5;
+
+    /**
+     * Epoch day used when there is no day, e.g. for range that is not selected.
+     */
+    static final int NO_DAY = Integer.MIN_VALUE;
+
+    private static final int DEFAULT_RANGE_COLOR = 0x33000000;
+
+    /**
+     * Drawable state sets indexed by enabled, pressed, selected and focused state bits, see
+     * {@link #getStateIndex(int)}.
+     */
+    private static final int[][] STATE_SETS = buildStateSets();
+
+    private static final DayDecorator[] NO_DECORATORS = new DayDecorator[0];
+
+    /**
+     * Source of per day state that {@link WeekRenderModel week models} are built from.
+     */
+    interface DayStates {
+
+        /**
+         * Returns state bits for passed epoch day.
+         */
+        int getDayState(int epochDay);
+
+        /**
+         * First day of selected range as epoch day or {@link #NO_DAY} if nothing is selected.
+         */
+        int getRangeStart();
+
+        /**
+         * Last day of selected range as epoch day.
+         */
+        int getRangeEnd();
+
+    }
+
+    private final boolean shareStyle;
+
+    float textSize = -1;
+    float labelTextSize = -1;
+    float labelPadding = 0;
+    @Nullable TextUtils.TruncateAt ellipsize = TextUtils.TruncateAt.END;
+    @NonNull DayOfWeek firstDayOfWeek = DayOfWeek.SUNDAY;
+    @Nullable CharSequence[] labelNames;
+    @NonNull Locale locale = Locale.getDefault();
+
+    @NonNull private ColorStateList dayTextColor = ColorStateList.valueOf(Color.BLACK);
+    @NonNull private ColorStateList dayLabelTextColor = ColorStateList.valueOf(Color.BLACK);
+
+    /**
+     * Text colors resolved for every state index, see {@link #getStateIndex(int)}.
+     */
+    private final int[] dayTextColors = new int[STATE_SETS.length];
+    private final int[] dayLabelTextColors = new int[STATE_SETS.length];
+
+    /**
+     * Whether view drawing the days is enabled. Days of disabled view are all drawn disabled.
+     */
+    private boolean viewEnabled = true;
+
+    @Nullable Drawable dayDrawable;
+    @Nullable Drawable indicatorDrawable;
+
+    // drawables are only inflated by loadDrawables(), before they are first drawn
+    private int dayDrawableRes;
+    private int indicatorDrawableRes;
+    private boolean drawablesLoaded;
+
+    final Paint rangePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private boolean rtl;
+
+    boolean showWeekNumbers;
+    boolean showMonthHeader;
+
+    /**
+     * Pressed and focused epoch days, or {@link #NO_DAY}. They are applied on top of model states
+     * while drawing.
+     */
+    int pressedDay = NO_DAY;
+    int focusedDay = NO_DAY;
+
+    /**
+     * Decorators in order they are drawn. Array is replaced on change, so it is iterated without an
+     * iterator.
+     */
+    @NonNull private DayDecorator[] decorators = NO_DECORATORS;
+    private final DayCell cell = new DayCell();
+
+    /**
+     * Paints, metrics and layouts for current configuration, obtained on first use by
+     * {@link #getStyle()}.
+     */
+    @Nullable private PickerStyle style;
+
+    private int dayWidth;
+
+    /**
+     * Left edges of day columns within a week followed by right edge of the last column.
+     */
+    final int[] columnEdges = new int[8];
+    private int weekColumnLeft;
+
+    private final Rect backgroundRect = new Rect();
+    private final Rect indicatorRect = new Rect();
+    private final RectF rangeRect = new RectF();
+
+    /**
+     * @param shareStyle Whether style resources can be shared with other drawers. Only drawers
+     *                   used on the main thread may share them.
+     */
+    WeekDrawer(boolean shareStyle) {
+        this.shareStyle = shareStyle;
+        rangePaint.setColor(DEFAULT_RANGE_COLOR);
+
+        resolveColors(dayTextColor, dayTextColors);
+        resolveColors(dayLabelTextColor, dayLabelTextColors);
+    }
+
+    /**
+     * Reads drawing related attributes from {@link R.styleable#WeekDatePicker} array.
+     */
+    void readAttributes(@NonNull TypedArray a) {
+
+        ColorStateList textColor = a.getColorStateList(R.styleable.WeekDatePicker_android_textColor);
+        if (textColor != null) {
+            setDayTextColor(textColor);
+        }
+
+        ColorStateList labelTextColor = a.getColorStateList(R.styleable.WeekDatePicker_wdp_labelTextColor);
+        if (labelTextColor != null) {
+            setDayLabelTextColor(labelTextColor);
+        }
+
+        switch (a.getInt(R.styleable.WeekDatePicker_android_ellipsize, 3)) {
+            case 1:
+                ellipsize = TextUtils.TruncateAt.START;
+                break;
+            case 2:
+                ellipsize = TextUtils.TruncateAt.MIDDLE;
+                break;
+            case 3:
+                ellipsize = TextUtils.TruncateAt.END;
+                break;
+            case 4:
+                ellipsize = TextUtils.TruncateAt.MARQUEE;
+                break;
+        }
+
+        textSize = a.getDimension(R.styleable.WeekDatePicker_android_textSize, textSize);
+        labelTextSize = a.getDimension(R.styleable.WeekDatePicker_wdp_labelTextSize, labelTextSize);
+        labelPadding = a.getDimension(R.styleable.WeekDatePicker_wdp_labelPadding, labelPadding);
+
+        labelNames = a.getTextArray(R.styleable.WeekDatePicker_wdp_labelNames);
+
+        dayDrawableRes = a.getResourceId(R.styleable.WeekDatePicker_wdp_dayBackground, 0);
+        indicatorDrawableRes = a.getResourceId(R.styleable.WeekDatePicker_wdp_indicatorDrawable, 0);
+        drawablesLoaded = false;
+
+        showWeekNumbers = a.getBoolean(R.styleable.WeekDatePicker_wdp_showWeekNumbers, showWeekNumbers);
+        showMonthHeader = a.getBoolean(R.styleable.WeekDatePicker_wdp_showMonthHeader, showMonthHeader);
+
+        int dayOfWeek = a.getInt(R.styleable.WeekDatePicker_wdp_firstDayOfWeek, firstDayOfWeek.getValue());
+        firstDayOfWeek = DayOfWeek.of(dayOfWeek);
+
+        rangePaint.setColor(a.getColor(R.styleable.WeekDatePicker_wdp_rangeColor, rangePaint.getColor()));
+    }
+
+    void setDayTextColor(@NonNull ColorStateList color) {
+        dayTextColor = color;
+        resolveColors(color, dayTextColors);
+    }
+
+    void setDayLabelTextColor(@NonNull ColorStateList color) {
+        dayLabelTextColor = color;
+        resolveColors(color, dayLabelTextColors);
+    }
+
+    /**
+     * Updates view level state that is folded into resolved colors.
+     *
+     * @return {@code true} if drawn days changed
+     */
+    boolean setViewEnabled(boolean enabled) {
+        if (viewEnabled == enabled) {
+            return false;
+        }
+
+        viewEnabled = enabled;
+        resolveColors(dayTextColor, dayTextColors);
+        resolveColors(dayLabelTextColor, dayLabelTextColors);
+        return true;
+    }
+
+    /**
+     * Resolves color state list once for every state index, so drawing a day is a single array
+     * read instead of a state list lookup.
+     */
+    private void resolveColors(@NonNull ColorStateList colors, @NonNull int[] table) {
+        int defaultColor = colors.getDefaultColor();
+        for (int i = 0; i < table.length; i++) {
+            int index = viewEnabled ? i : i & ~STATE_ENABLED;
+            table[i] = colors.getColorForState(STATE_SETS[index], defaultColor);
+        }
+    }
+
+    boolean hasWeekColumn() {
+        return showWeekNumbers || showMonthHeader;
+    }
+
+    /**
+     * Number of day wide columns a week is divided into, including week column.
+     */
+    int getColumnCount() {
+        return hasWeekColumn() ? 8 : 7;
+    }
+
+    boolean isRtl() {
+        return rtl;
+    }
+
+    void setRtl(boolean rtl) {
+        this.rtl = rtl;
+        updateColumns();
+    }
+
+    boolean hasLayouts() {
+        return dayWidth > 0;
+    }
+
+    /**
+     * Inflates day and indicator drawables unless they are already loaded.
+     */
+    void loadDrawables(@NonNull Context context) {
+
+        if (drawablesLoaded) {
+            return;
+        }
+
+        drawablesLoaded = true;
+        dayDrawable = dayDrawableRes == 0 ? null : ContextCompat.getDrawable(context, dayDrawableRes);
+        indicatorDrawable = indicatorDrawableRes == 0
+                ? null : ContextCompat.getDrawable(context, indicatorDrawableRes);
+
+        calculateBackgroundRect();
+        calculateIndicatorRect();
+    }
+
+    /**
+     * Updates day width and everything that depends on it.
+     */
+    void setDayWidth(int dayWidth) {
+        this.dayWidth = dayWidth;
+
+        updateStyle();
+        updateColumns();
+
+        calculateBackgroundRect();
+        calculateIndicatorRect();
+    }
+
+    private void updateColumns() {
+
+        // week column comes first, on the right side in RTL
+        int offset = hasWeekColumn() && !rtl ? dayWidth : 0;
+        for (int i = 0; i < columnEdges.length; i++) {
+            columnEdges[i] = offset + i * dayWidth;
+        }
+
+        weekColumnLeft = rtl ? 7 * dayWidth : 0;
+    }
+
+    boolean hasStyle() {
+        return style != null;
+    }
+
+    boolean areDrawablesLoaded() {
+        return drawablesLoaded;
+    }
+
+    /**
+     * Drops style after a change of its inputs. New one is obtained once it is needed.
+     */
+    void updateStyle() {
+        style = null;
+    }
+
+    /**
+     * Returns style for current configuration. Layouts are only built once day width is known.
+     */
+    @NonNull PickerStyle getStyle() {
+        PickerStyle style = this.style;
+        if (style == null) {
+            if (shareStyle) {
+                style = PickerStyle.obtain(textSize, labelTextSize, dayWidth, ellipsize,
+                        firstDayOfWeek, labelNames, locale);
+            } else {
+                style = PickerStyle.create(textSize, labelTextSize, dayWidth, ellipsize,
+                        firstDayOfWeek, labelNames, locale);
+            }
+            this.style = style;
+        }
+        return style;
+    }
+
+    /**
+     * Font metrics of day labels. Does not need a style, so it is cheap to call while measuring.
+     */
+    @NonNull FontMetricsInt getLabelFontMetrics() {
+        if (shareStyle) {
+            return PickerStyle.obtainFontMetrics(labelTextSize);
+        } else {
+            return getStyle().dayLabelTextPaint.getFontMetricsInt();
+        }
+    }
+
+    void addDecorator(@NonNull DayDecorator decorator) {
+        DayDecorator[] decorators = Arrays.copyOf(this.decorators, this.decorators.length + 1);
+        decorators[decorators.length - 1] = decorator;
+        this.decorators = decorators;
+    }
+
+    /**
+     * @return {@code true} if decorator was removed
+     */
+    boolean removeDecorator(@NonNull DayDecorator decorator) {
+        for (int i = 0; i < decorators.length; i++) {
+            if (decorators[i] == decorator) {
+                DayDecorator[] newDecorators = new DayDecorator[decorators.length - 1];
+                System.arraycopy(decorators, 0, newDecorators, 0, i);
+                System.arraycopy(decorators, i + 1, newDecorators, i, newDecorators.length - i);
+                decorators = newDecorators.length == 0 ? NO_DECORATORS : newDecorators;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if drawn weeks only depend on day states, so they can be cached.
+     */
+    boolean isCacheablePerWeek() {
+        for (DayDecorator decorator : decorators) {
+            if (!decorator.isCacheablePerWeek()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Height of day label row including label padding.
+     */
+    float getLabelsHeight() {
+        return getStyle().getDayLabelLayout(0).getHeight() + labelPadding;
+    }
+
+    /**
+     * Height of a single row of days. Rows of month grid are placed this far apart.
+     */
+    int getRowHeight() {
+        return dayWidth / 3 * 2;
+    }
+
+    /**
+     * Draws passed week at current canvas origin.
+     */
+    void drawWeek(@NonNull Canvas canvas, @NonNull WeekRenderModel week) {
+
+        int saveCount = canvas.save();
+
+        drawLabels(canvas, week);
+        canvas.translate(0, getLabelsHeight());
+        drawDays(canvas, week);
+
+        canvas.restoreToCount(saveCount);
+
+    }
+
+    /**
+     * Draws day labels of passed week at current canvas origin.
+     */
+    void drawLabels(@NonNull Canvas canvas, @NonNull WeekRenderModel week) {
+
+        PickerStyle style = getStyle();
+
+        for (int i = 0; i < 7; i++) {
+
+            int state = getState(week, i);
+            BoringLayout labelLayout = style.getDayLabelLayout(i);
+
+            int column = rtl ? 6 - i : i;
+            int count = canvas.save();
+            canvas.translate(columnEdges[column], 0);
+
+            style.dayLabelTextPaint.setColor(dayLabelTextColors[getStateIndex(state)]);
+            labelLayout.draw(canvas);
+
+            canvas.restoreToCount(count);
+        }
+
+        if (showMonthHeader) {
+            drawWeekColumn(canvas, style.getMonthLayout(week.info.getMonth()), 0);
+        }
+
+    }
+
+    /**
+     * Draws a single row of days of passed week. Canvas origin is at the top of the row. Strip and
+     * month grid both draw their rows with this, so they share the same layouts.
+     */
+    void drawDays(@NonNull Canvas canvas, @NonNull WeekRenderModel week) {
+
+        int saveCount = canvas.save();
+
+        PickerStyle style = getStyle();
+        float circleRadius = dayWidth / 3;
+        int centerY = style.getDayLayout(1).getHeight() / 2;
+        float dateLineOffset = circleRadius - centerY;
+
+        drawRangeRun(canvas, week, dateLineOffset + centerY, circleRadius);
+
+        if (showWeekNumbers) {
+            BoringLayout layout = style.getWeekNumberLayout(week.info.getWeekNumber());
+            drawWeekColumn(canvas, layout, dateLineOffset + centerY - layout.getHeight() / 2);
+        }
+
+        DayDecorator[] decorators = this.decorators;
+        int rowHeight = getRowHeight();
+
+        for (int i = 0; i < 7; i++) {
+
+            int state = getState(week, i);
+            int dayOfMonth = week.getDayOfMonth(i);
+            BoringLayout layout = style.getDayLayout(dayOfMonth);
+
+            int column = rtl ? 6 - i : i;
+            int count = canvas.save();
+            canvas.translate(columnEdges[column], dateLineOffset);
+
+            style.dayTextPaint.setColor(dayTextColors[getStateIndex(state)]);
+
+            int[] drawableState = getDrawableStateSet(viewEnabled ? state : state & ~STATE_ENABLED);
+
+            if (dayDrawable != null) {
+                dayDrawable.setBounds(backgroundRect);
+                dayDrawable.setState(drawableState);
+                dayDrawable.draw(canvas);
+            }
+
+            if (indicatorDrawable != null && (state & STATE_INDICATOR) != 0) {
+                indicatorDrawable.setBounds(indicatorRect);
+                indicatorDrawable.setState(drawableState);
+                indicatorDrawable.draw(canvas);
+            }
+
+            layout.draw(canvas);
+
+            canvas.restoreToCount(count);
+
+            if (decorators.length > 0) {
+                DayCell cell = this.cell;
+                cell.epochDay = week.weekStartEpoch + i;
+                cell.dayOfMonth = dayOfMonth;
+                cell.state = state;
+                cell.bounds.set(columnEdges[column], 0, columnEdges[column] + dayWidth, rowHeight);
+
+                for (DayDecorator decorator : decorators) {
+                    decorator.decorate(canvas, cell);
+                }
+            }
+        }
+
+        canvas.restoreToCount(saveCount);
+
+    }
+
+    /**
+     * Draws passed layout in week column with label color.
+     */
+    private void drawWeekColumn(@NonNull Canvas canvas, @NonNull BoringLayout layout, float top) {
+
+        int count = canvas.save();
+        canvas.translate(weekColumnLeft, top);
+
+        layout.getPaint().setColor(dayLabelTextColors[getStateIndex(STATE_ENABLED)]);
+        layout.draw(canvas);
+
+        canvas.restoreToCount(count);
+    }
+
+    /**
+     * Returns model state of day at passed position in week with pressed and focused state.
+     */
+    private int getState(@NonNull WeekRenderModel week, int position) {
+
+        int state = week.getState(position);
+
+        int epochDay = week.weekStartEpoch + position;
+        if (epochDay == pressedDay) {
+            state |= STATE_PRESSED;
+        }
+        if (epochDay == focusedDay) {
+            state |= STATE_FOCUSED;
+        }
+
+        return state;
+    }
+
+    /**
+     * Draws part of selected range that falls into the week as a single rounded rect spanning all
+     * its days.
+     */
+    private void drawRangeRun(Canvas canvas, WeekRenderModel week, float centerY, float radius) {
+
+        if (week.runStart == WeekRenderModel.NO_RUN) {
+            return;
+        }
+
+        int firstColumn = week.runStart;
+        int lastColumn = week.runEnd;
+        if (rtl) {
+            firstColumn = 6 - week.runEnd;
+            lastColumn = 6 - week.runStart;
+        }
+
+        float centerX = dayWidth / 2;
+        rangeRect.set(columnEdges[firstColumn] + centerX - radius, centerY - radius,
+                columnEdges[lastColumn] + centerX + radius, centerY + radius);
+        canvas.drawRoundRect(rangeRect, radius, radius, rangePaint);
+    }
+
+    private void calculateBackgroundRect() {
+
+        if (dayDrawable != null && hasLayouts()) {
+            float circleRadius = dayWidth / 3;
+            int centerX = dayWidth / 2;
+            int centerY = getStyle().getDayLayout(1).getHeight() / 2;
+
+            backgroundRect.set((int) (centerX - circleRadius), (int) (centerY - circleRadius),
+                    (int) (centerX + circleRadius), (int) (centerY + circleRadius));
+        }
+
+    }
+
+    private void calculateIndicatorRect() {
+
+        if (indicatorDrawable != null && hasLayouts()) {
+
+            float circleRadius = dayWidth / 3;
+            int centerX = dayWidth / 2;
+            int centerY = getStyle().getDayLayout(1).getHeight() / 2;
+
+            int indicatorDotWidth = indicatorDrawable.getIntrinsicWidth();
+            int indicatorDotHeight = indicatorDrawable.getIntrinsicHeight();
+            indicatorRect.set(centerX - indicatorDotWidth / 2,
+                    (int) (centerY + circleRadius - indicatorDotHeight),
+                    centerX + indicatorDotWidth / 2, (int) (centerY + circleRadius));
+
+        }
+
+    }
+
+    /**
+     * State set used for text colors.
+     */
+    static int[] getTextStateSet(int state) {
+        return STATE_SETS[getStateIndex(state)];
+    }
+
+    /**
+     * Packs enabled, pressed, selected and focused bits into a dense index between 0 and 15.
+     */
+    static int getStateIndex(int state) {
+        return (state & (STATE_ENABLED | STATE_PRESSED | STATE_SELECTED))
+                | (state & STATE_FOCUSED) >> 2;
+    }
+
+    /**
+     * State set used for drawables. Days inside of a range are drawn by range run, so they are
+     * not selected.
+     */
+    static int[] getDrawableStateSet(int state) {
+        if ((state & STATE_IN_RANGE) != 0) {
+            state &= ~STATE_SELECTED;
+        }
+        return getTextStateSet(state);
+    }
+
+    private static int[][] buildStateSets() {
+
+        int[][] sets = new int[16][];
+        for (int i = 0; i < sets.length; i++) {
+
+            int size = Integer.bitCount(i);
+            int[] set = new int[size];
+            int index = 0;
+
+            if ((i & STATE_FOCUSED >> 2) != 0) {
+                set[index++] = android.R.attr.state_focused;
+            }
+
+            if ((i & STATE_ENABLED) != 0) {
+                set[index++] = android.R.attr.state_enabled;
+            }
+
+            if ((i & STATE_PRESSED) != 0) {
+                set[index++] = android.R.attr.state_pressed;
+            }
+
+            if ((i & STATE_SELECTED) != 0) {
+                set[index] = android.R.attr.state_selected;
+            }
+
+            sets[i] = set;
+        }
+        return sets;
+    }
+
+}
@@ -0,0 +1,89 @@
+package solar.blaz.date.week;
+
+import android.support.annotation.NonNull;
+
+import org.threeten.bp.DayOfWeek;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.Month;
+import org.threeten.bp.temporal.WeekFields;
+
+/**
+ * Number, month and year of a single week. Week numbers follow ISO 8601 rules, where first week of
+ * a year is the one with at least four of its days in that year, but with weeks starting on
+ * picker's first day of week.
+ */
+public final class WeekInfo {
+
+    /**
+     * ISO 8601 minimal number of days in the first week of a year.
+     */
+    private static final int MINIMAL_DAYS_IN_FIRST_WEEK = 4;
+
+    @NonNull private final LocalDate weekStart;
+    private final int weekNumber;
+    private final int weekBasedYear;
+    @NonNull private final Month month;
+    private final int year;
+
+    private WeekInfo(@NonNull LocalDate weekStart, int weekNumber, int weekBasedYear,
+            @NonNull Month month, int year) {
+        this.weekStart = weekStart;
+        this.weekNumber = weekNumber;
+        this.weekBasedYear = weekBasedYear;
+        this.month = month;
+        this.year = year;
+    }
+
+    /**
+     * Computes info of week starting with passed epoch day.
+     */
+    @NonNull static WeekInfo create(int weekStartEpoch, @NonNull DayOfWeek firstDayOfWeek) {
+
+        WeekFields weekFields = WeekFields.of(firstDayOfWeek, MINIMAL_DAYS_IN_FIRST_WEEK);
+
+        LocalDate weekStart = LocalDate.ofEpochDay(weekStartEpoch);
+        LocalDate middle = weekStart.plusDays(3); // week belongs to month of its middle day
+
+        return new WeekInfo(weekStart,
+                weekStart.get(weekFields.weekOfWeekBasedYear()),
+                weekStart.get(weekFields.weekBasedYear()),
+                middle.getMonth(),
+                middle.getYear());
+    }
+
+    /**
+     * First day of the week.
+     */
+    @NonNull public LocalDate getWeekStart() {
+        return weekStart;
+    }
+
+    /**
+     * Number of the week within its week based year, between 1 and 53.
+     */
+    public int getWeekNumber() {
+        return weekNumber;
+    }
+
+    /**
+     * Year the week number belongs to. Differs from calendar year for weeks around new year.
+     */
+    public int getWeekBasedYear() {
+        return weekBasedYear;
+    }
+
+    /**
+     * Month of the week, which is the month of its middle day. Same month as used by month grid.
+     */
+    @NonNull public Month getMonth() {
+        return month;
+    }
+
+    /**
+     * Calendar year of week's {@link #getMonth() month}.
+     */
+    public int getYear() {
+        return year;
+    }
+
+}
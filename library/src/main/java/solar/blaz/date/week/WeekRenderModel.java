@@ -0,0 +1,163 @@
+package solar.blaz.date.week;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.threeten.bp.DayOfWeek;
+import org.threeten.bp.LocalDate;
+
+/**
+ * Everything {@link WeekDrawer} needs to know about a single week: day numbers, state bits,
+ * selected range run and {@link WeekInfo week info}. Models are immutable and built from
+ * {@link WeekDrawer.DayStates} on any thread, so drawing only reads primitives.
+ *
+ * Pressed and focused days change with every touch and key press, so they are not part of the
+ * model. Drawer applies them on top of model states.
+ */
+final class WeekRenderModel {
+
+    /**
+     * Position in week used for range run when the week has no selected range.
+     */
+    static final int NO_RUN = -1;
+
+    final int weekStartEpoch;
+
+    // indexed by position in week
+    private final int[] states;
+    private final int[] daysOfMonth;
+
+    /**
+     * Positions in week of the first and last day covered by range run, or {@link #NO_RUN}.
+     */
+    final int runStart;
+    final int runEnd;
+
+    /**
+     * Info of week, {@code null} if model was built for a drawer without week column.
+     */
+    @Nullable final WeekInfo info;
+
+    private WeekRenderModel(int weekStartEpoch, int[] states, int[] daysOfMonth, int runStart,
+            int runEnd, @Nullable WeekInfo info) {
+        this.weekStartEpoch = weekStartEpoch;
+        this.states = states;
+        this.daysOfMonth = daysOfMonth;
+        this.runStart = runStart;
+        this.runEnd = runEnd;
+        this.info = info;
+    }
+
+    /**
+     * Builds model of week starting with passed epoch day. Passed states are only read.
+     *
+     * @param withInfo Whether to compute {@link #info}, only needed when week column is drawn
+     */
+    @NonNull static WeekRenderModel build(int weekStartEpoch, @NonNull WeekDrawer.DayStates dayStates,
+            @NonNull DayOfWeek firstDayOfWeek, boolean withInfo) {
+
+        int[] states = new int[7];
+        int[] daysOfMonth = new int[7];
+
+        LocalDate weekStart = LocalDate.ofEpochDay(weekStartEpoch);
+        int dayOfMonth = weekStart.getDayOfMonth();
+        int monthLength = weekStart.lengthOfMonth();
+
+        for (int i = 0; i < 7; i++) {
+            states[i] = dayStates.getDayState(weekStartEpoch + i);
+            daysOfMonth[i] = dayOfMonth;
+
+            if (++dayOfMonth > monthLength) {
+                dayOfMonth = 1;
+            }
+        }
+
+        int runStart = NO_RUN;
+        int runEnd = NO_RUN;
+
+        int rangeStart = dayStates.getRangeStart();
+        if (rangeStart != WeekDrawer.NO_DAY) {
+            int start = Math.max(rangeStart, weekStartEpoch);
+            int end = Math.min(dayStates.getRangeEnd(), weekStartEpoch + 6);
+
+            if (start <= end) {
+                runStart = start - weekStartEpoch;
+                runEnd = end - weekStartEpoch;
+            }
+        }
+
+        return new WeekRenderModel(weekStartEpoch, states, daysOfMonth, runStart, runEnd,
+                withInfo ? WeekInfo.create(weekStartEpoch, firstDayOfWeek) : null);
+    }
+
+    /**
+     * State bits of day at passed position in week, without pressed and focused state.
+     */
+    int getState(int position) {
+        return states[position];
+    }
+
+    int getDayOfMonth(int position) {
+        return daysOfMonth[position];
+    }
+
+    /**
+     * Models of consecutive weeks built from the same day states. Frames are published to the
+     * view as a whole, so drawing never sees a partly built one.
+     */
+    static final class Frame {
+
+        static final Frame EMPTY = new Frame(0, null, 0, new WeekRenderModel[0]);
+
+        /**
+         * Frames are published in order of their generation, older frame never replaces a newer.
+         */
+        final int generation;
+
+        /**
+         * Day states models were built from, {@code null} for the empty frame.
+         */
+        @Nullable final WeekDrawer.DayStates states;
+
+        private final int firstWeekEpoch;
+        private final WeekRenderModel[] weeks;
+
+        private Frame(int generation, @Nullable WeekDrawer.DayStates states, int firstWeekEpoch,
+                @NonNull WeekRenderModel[] weeks) {
+            this.generation = generation;
+            this.states = states;
+            this.firstWeekEpoch = firstWeekEpoch;
+            this.weeks = weeks;
+        }
+
+        /**
+         * Builds models of weeks between passed week starts, both inclusive.
+         */
+        @NonNull static Frame build(int generation, @NonNull WeekDrawer.DayStates states,
+                @NonNull DayOfWeek firstDayOfWeek, boolean withInfo, int firstWeekEpoch,
+                int lastWeekEpoch) {
+
+            WeekRenderModel[] weeks = new WeekRenderModel[(lastWeekEpoch - firstWeekEpoch) / 7 + 1];
+            for (int i = 0; i < weeks.length; i++) {
+                weeks[i] = WeekRenderModel.build(firstWeekEpoch + i * 7, states, firstDayOfWeek,
+                        withInfo);
+            }
+
+            return new Frame(generation, states, firstWeekEpoch, weeks);
+        }
+
+        /**
+         * Returns model of week starting with passed epoch day or {@code null} if frame does not
+         * contain it.
+         */
+        @Nullable WeekRenderModel get(int weekStartEpoch) {
+            int offset = weekStartEpoch - firstWeekEpoch;
+            if (offset < 0 || offset % 7 != 0 || offset / 7 >= weeks.length) {
+                return null;
+            }
+            return weeks[offset / 7];
+        }
+
+    }
+
+}
@@ -0,0 +1,262 @@
+package solar.blaz.date.week;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.util.SparseBooleanArray;
+
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.temporal.TemporalAdjusters;
+
+import java.util.ArrayDeque;
+
+/**
+ * Renders week strips exactly as {@link WeekDatePicker} draws them, but without a view. Meant for
+ * home screen widgets, notifications and other places where inflating a picker is too expensive.
+ *
+ * Renderer can be created and used on any thread, but a single renderer is not thread safe. To
+ * render weeks in parallel create one renderer per worker thread. Only {@link #recycle(Bitmap)}
+ * may be called from any thread.
+ */
+public class WeekStripRenderer {
+
+    private static final int NO_DAY = WeekDrawer.NO_DAY;
+
+    private static final int MAX_POOLED_BITMAPS = 4;
+
+    private final WeekDrawer drawer = new WeekDrawer(false);
+
+    private final int width;
+    private final int height;
+
+    private final Canvas bitmapCanvas = new Canvas();
+    private final ArrayDeque<Bitmap> bitmapPool = new ArrayDeque<>(MAX_POOLED_BITMAPS);
+
+    private int selectedDay = NO_DAY;
+    private int rangeStart = NO_DAY;
+    private int rangeEnd = NO_DAY;
+    private int fromDay = NO_DAY;
+    private int toDay = NO_DAY;
+
+    private final SparseBooleanArray dayIndicators = new SparseBooleanArray();
+
+    private final WeekDrawer.DayStates dayStates = new WeekDrawer.DayStates() {
+
+        @Override
+        public int getDayState(int epochDay) {
+
+            int state = 0;
+
+            if ((fromDay == NO_DAY || epochDay >= fromDay) && (toDay == NO_DAY || epochDay <= toDay)) {
+                state |= WeekDrawer.STATE_ENABLED;
+            }
+
+            if (rangeStart != NO_DAY) {
+                if (epochDay >= rangeStart && epochDay <= rangeEnd) {
+                    state |= WeekDrawer.STATE_SELECTED;
+
+                    if (epochDay != rangeStart && epochDay != rangeEnd) {
+                        state |= WeekDrawer.STATE_IN_RANGE;
+                    }
+                }
+            } else if (epochDay == selectedDay) {
+                state |= WeekDrawer.STATE_SELECTED;
+            }
+
+            if (dayIndicators.get(epochDay, false)) {
+                state |= WeekDrawer.STATE_INDICATOR;
+            }
+
+            return state;
+        }
+
+        @Override
+        public int getRangeStart() {
+            return rangeStart;
+        }
+
+        @Override
+        public int getRangeEnd() {
+            return rangeEnd;
+        }
+
+    };
+
+    /**
+     * Creates renderer styled by {@link R.attr#weekDatePickerStyle} of context theme.
+     *
+     * @param width Width of rendered strip in px
+     * @param height Height of rendered strip in px
+     */
+    public WeekStripRenderer(@NonNull Context context, int width, int height) {
+        this(context, null, R.attr.weekDatePickerStyle, width, height);
+    }
+
+    /**
+     * Creates renderer styled with the same attributes as {@link WeekDatePicker}.
+     *
+     * @param width Width of rendered strip in px
+     * @param height Height of rendered strip in px
+     */
+    public WeekStripRenderer(@NonNull Context context, @Nullable AttributeSet attrs, int defStyle,
+            int width, int height) {
+
+        this.width = width;
+        this.height = height;
+
+        TypedArray a = context.getTheme().obtainStyledAttributes(
+                attrs,
+                R.styleable.WeekDatePicker,
+                defStyle, 0
+        );
+
+        try {
+            drawer.readAttributes(a);
+        } finally {
+            a.recycle();
+        }
+
+        // drawable state is changed while drawing, so renderer can't share it with anyone
+        drawer.loadDrawables(context);
+        drawer.dayDrawable = mutate(drawer.dayDrawable);
+        drawer.indicatorDrawable = mutate(drawer.indicatorDrawable);
+
+        drawer.setDayWidth(width / drawer.getColumnCount());
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Limits enabled days. Days outside of limits are drawn disabled.
+     */
+    public void setLimits(@Nullable LocalDate from, @Nullable LocalDate to) {
+        fromDay = from == null ? NO_DAY : (int) from.toEpochDay();
+        toDay = to == null ? NO_DAY : (int) to.toEpochDay();
+    }
+
+    /**
+     * Selects single day. Clears selected range.
+     */
+    public void setSelectedDay(@Nullable LocalDate date) {
+        selectedDay = date == null ? NO_DAY : (int) date.toEpochDay();
+        rangeStart = NO_DAY;
+        rangeEnd = NO_DAY;
+    }
+
+    /**
+     * Selects range of days. Clears selected day.
+     */
+    public void setSelectedRange(@NonNull LocalDate start, @NonNull LocalDate end) {
+        int startEpoch = (int) start.toEpochDay();
+        int endEpoch = (int) end.toEpochDay();
+
+        rangeStart = Math.min(startEpoch, endEpoch);
+        rangeEnd = Math.max(startEpoch, endEpoch);
+        selectedDay = NO_DAY;
+    }
+
+    public void setDateIndicator(@NonNull LocalDate date, boolean enabled) {
+        int epochDay = (int) date.toEpochDay();
+        if (enabled) {
+            dayIndicators.put(epochDay, true);
+        } else {
+            dayIndicators.delete(epochDay);
+        }
+    }
+
+    /**
+     * Adds decorator drawn on top of every day. See {@link DayDecorator} for its contract.
+     */
+    public void addDayDecorator(@NonNull DayDecorator decorator) {
+        drawer.addDecorator(decorator);
+    }
+
+    public void removeDayDecorator(@NonNull DayDecorator decorator) {
+        drawer.removeDecorator(decorator);
+    }
+
+    /**
+     * Returns {@code true} if rendered weeks can be cached and reused for as long as selection,
+     * limits and indicators of their days don't change. This is {@code false} when any decorator
+     * is not {@link DayDecorator#isCacheablePerWeek() cacheable}.
+     */
+    public boolean isCacheablePerWeek() {
+        return drawer.isCacheablePerWeek();
+    }
+
+    /**
+     * Draws week containing passed date to canvas at its current origin.
+     */
+    public void render(@NonNull LocalDate week, @NonNull Canvas canvas) {
+        LocalDate weekStart = week.with(TemporalAdjusters.previousOrSame(drawer.firstDayOfWeek));
+        drawer.drawWeek(canvas, WeekRenderModel.build((int) weekStart.toEpochDay(), dayStates,
+                drawer.firstDayOfWeek, drawer.hasWeekColumn()));
+    }
+
+    /**
+     * Renders week containing passed date into a bitmap from renderer pool. Return bitmap with
+     * {@link #recycle(Bitmap)} once it is no longer needed.
+     */
+    @NonNull public Bitmap render(@NonNull LocalDate week) {
+
+        Bitmap bitmap = obtainBitmap();
+
+        bitmapCanvas.setBitmap(bitmap);
+        render(week, bitmapCanvas);
+        bitmapCanvas.setBitmap(null);
+
+        return bitmap;
+    }
+
+    /**
+     * Returns bitmap obtained by {@link #render(LocalDate)} to pool.
+     */
+    public void recycle(@NonNull Bitmap bitmap) {
+
+        if (bitmap.isRecycled()) {
+            return;
+        }
+
+        synchronized (bitmapPool) {
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height
+                    && bitmapPool.size() < MAX_POOLED_BITMAPS) {
+                bitmapPool.push(bitmap);
+                return;
+            }
+        }
+
+        bitmap.recycle();
+    }
+
+    @NonNull private Bitmap obtainBitmap() {
+
+        Bitmap bitmap;
+        synchronized (bitmapPool) {
+            bitmap = bitmapPool.poll();
+        }
+
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+        return bitmap;
+    }
+
+    @Nullable private static Drawable mutate(@Nullable Drawable drawable) {
+        return drawable == null ? null : drawable.mutate();
+    }
+
+}
@@ -0,0 +1,89 @@
+package solar.blaz.date.week;
+
+import android.support.annotation.NonNull;
+
+import org.threeten.bp.DayOfWeek;
+import org.threeten.bp.format.TextStyle;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Process wide cache of localized weekday names. Names are resolved through the formatter once per
+ * locale, text style and first day of week and then shared by all pickers.
+ *
+ * Safe to use from any thread.
+ */
+final class WeekdayNames {
+
+    private static final Map<Key, String[]> cache = new HashMap<>();
+
+    private WeekdayNames() {
+    }
+
+    /**
+     * Returns weekday names ordered from passed first day of week. Returned array must not be
+     * modified.
+     */
+    @NonNull static synchronized String[] get(@NonNull Locale locale, @NonNull TextStyle textStyle,
+            @NonNull DayOfWeek firstDayOfWeek) {
+
+        Key key = new Key(locale, textStyle, firstDayOfWeek);
+
+        String[] names = cache.get(key);
+        if (names == null) {
+            names = new String[7];
+
+            DayOfWeek dayOfWeek = firstDayOfWeek;
+            for (int i = 0; i < names.length; i++) {
+                names[i] = dayOfWeek.getDisplayName(textStyle, locale);
+                dayOfWeek = dayOfWeek.plus(1);
+            }
+
+            cache.put(key, names);
+        }
+        return names;
+    }
+
+    /**
+     * Drops all cached names. Called when locale configuration changes.
+     */
+    static synchronized void invalidate() {
+        cache.clear();
+    }
+
+    private static final class Key {
+
+        private final Locale locale;
+        private final TextStyle textStyle;
+        private final DayOfWeek firstDayOfWeek;
+
+        Key(Locale locale, TextStyle textStyle, DayOfWeek firstDayOfWeek) {
+            this.locale = locale;
+            this.textStyle = textStyle;
+            this.firstDayOfWeek = firstDayOfWeek;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return locale.equals(key.locale)
+                    && textStyle == key.textStyle
+                    && firstDayOfWeek == key.firstDayOfWeek;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = locale.hashCode();
+            result = 31 * result + textStyle.hashCode();
+            result = 31 * result + firstDayOfWeek.hashCode();
+            return result;
+        }
+    }
+
+}